@@ -0,0 +1,145 @@
+package com.dy.health;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export and import of a history of records through the archive format and, for comparison, through
+ * plain Java serialization of one object per record. Both go through in-memory streams, so the
+ * numbers are the cost of encoding and decoding; the sizes are reported as the {@code archiveBytes}
+ * and {@code serializedBytes} counters of each iteration of the exports.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArchiveBenchmark {
+
+    private static final LocalDate DATE = LocalDate.parse("2016-09-28");
+    private static final int RECORDS = 100_000;
+
+    private HealthService service;
+    private RecordBatch history;
+    private byte[] archive;
+    private byte[] serialized;
+    private final RecordBatch batch = new RecordBatch(1 << 14);
+
+    static final class SerializedRecord implements Serializable {
+        private static final long serialVersionUID = 1L;
+        final byte type;
+        final String name;
+        final String measureUnit;
+        final double quantity;
+        final long epochSecond;
+        final int durationSeconds;
+
+        SerializedRecord(byte type, String name, String measureUnit, double quantity, long epochSecond,
+                         int durationSeconds) {
+            this.type = type;
+            this.name = name;
+            this.measureUnit = measureUnit;
+            this.quantity = quantity;
+            this.epochSecond = epochSecond;
+            this.durationSeconds = durationSeconds;
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        service = new HealthService(BenchmarkSetups.standard());
+        history = new RecordBatch(RECORDS);
+        String[] foods = {"porridge", "sandwich", "pizza", "pelmeni", "apple"};
+        for (int i = 0; i < RECORDS / 3; i++) {
+            LocalDateTime time = DATE.atTime(7, 0).minusMinutes(i * 20L);
+            history.drink("water", "glass", 1 + i % 3, time);
+            history.eat(foods[i % foods.length], "kilocal", 150 + i % 500 * 1.5, time.plusMinutes(5));
+            history.move("step", 100 + i % 2000, time.plusMinutes(6), time.plusMinutes(16));
+        }
+        service.ingest(history);
+        archive = writeArchive();
+        serialized = writeSerialized();
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Sizes {
+        public long archiveBytes;
+        public long serializedBytes;
+
+        @TearDown(Level.Iteration)
+        public void measure(ArchiveBenchmark benchmark) {
+            archiveBytes = benchmark.archive.length;
+            serializedBytes = benchmark.serialized.length;
+        }
+    }
+
+    @Benchmark
+    public byte[] exportArchive(Sizes sizes) throws IOException {
+        return writeArchive();
+    }
+
+    @Benchmark
+    public byte[] exportSerialized(Sizes sizes) throws IOException {
+        return writeSerialized();
+    }
+
+    private byte[] writeArchive() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+        try (RecordArchiveWriter writer = new RecordArchiveWriter(Channels.newChannel(out), service.getSetup())) {
+            writer.write(history);
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] writeSerialized() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+        try (ObjectOutputStream objects = new ObjectOutputStream(out)) {
+            objects.writeInt(history.size());
+            for (int i = 0; i < history.size(); i++) {
+                objects.writeObject(new SerializedRecord(history.type(i), history.name(i),
+                        history.measureUnit(i), history.quantity(i), history.epochSecond(i),
+                        history.durationSeconds(i)));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public int importArchive() throws IOException {
+        RecordArchiveReader reader = new RecordArchiveReader(Channels.newChannel(new ByteArrayInputStream(archive)));
+        int records = 0;
+        while (reader.read(batch, 1 << 14)) {
+            records += batch.size();
+        }
+        return records;
+    }
+
+    @Benchmark
+    public int importSerialized() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            int size = objects.readInt();
+            batch.clear();
+            for (int i = 0; i < size; i++) {
+                SerializedRecord record = (SerializedRecord) objects.readObject();
+                batch.add(record.type, record.name, record.measureUnit, record.quantity, record.epochSecond,
+                        record.durationSeconds);
+                if (batch.size() == 1 << 14) batch.clear();
+            }
+            return size;
+        }
+    }
+
+    @Benchmark
+    public HealthService roundTripService() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+        service.exportTo(Channels.newChannel(out));
+        return HealthService.importFrom(Channels.newChannel(new ByteArrayInputStream(out.toByteArray())));
+    }
+}
@@ -0,0 +1,58 @@
+package com.dy.health;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events per second through one call per event against a single {@link RecordBatch}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchIngestionBenchmark {
+
+    private static final int EVENTS = 10_000;
+    private static final LocalDate START = LocalDate.parse("2016-01-01");
+
+    @Param({"1", "30", "365"})
+    private int daysSpanned;
+
+    private HealthServiceSetup setup;
+    private LocalDateTime[] times;
+    private RecordBatch batch;
+
+    @Setup
+    public void setUp() {
+        setup = BenchmarkSetups.standard();
+        times = new LocalDateTime[EVENTS];
+        batch = new RecordBatch(EVENTS);
+        for (int i = 0; i < EVENTS; i++) {
+            times[i] = START.plusDays(i % daysSpanned).atTime(8, 0).plusSeconds(i / daysSpanned);
+            batch.drink("water", "glass", 1, times[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public HealthService singleCalls() {
+        HealthService service = new HealthService(setup);
+        for (LocalDateTime time : times) {
+            service.drink("water", "glass", 1, time);
+        }
+        return service;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public HealthService batch() {
+        HealthService service = new HealthService(setup);
+        service.ingest(batch);
+        return service;
+    }
+}
@@ -0,0 +1,38 @@
+package com.dy.health;
+
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The setup the benchmarks start from: an "all" range over the whole day and the norms from the README.
+ * Every call returns a fresh setup, so a benchmark can set its own options on it.
+ */
+final class BenchmarkSetups {
+
+    private BenchmarkSetups() {
+    }
+
+    static HealthServiceSetup standard() {
+        return standard(new HashMap<>());
+    }
+
+    /**
+     * The standard setup with one more named range.
+     */
+    static HealthServiceSetup standard(String rangeName, TimeRange range) {
+        Map<String, TimeRange> namedTimeRanges = new HashMap<>();
+        namedTimeRanges.put(rangeName, range);
+        return standard(namedTimeRanges);
+    }
+
+    private static HealthServiceSetup standard(Map<String, TimeRange> namedTimeRanges) {
+        namedTimeRanges.put("all", new TimeRange(LocalTime.MIDNIGHT, LocalTime.MIDNIGHT));
+        return new HealthServiceSetup()
+                .setNamedTimeRanges(namedTimeRanges)
+                .setMinStepsPerDay(2000)
+                .setMinHoursOfMovementPerDay(2)
+                .setMinKilocalsPerDay(1300)
+                .setMinLitersPerDay(2);
+    }
+}
@@ -0,0 +1,67 @@
+package com.dy.health;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nightly cohort period reports over rolling windows on fork-join pools of growing parallelism.
+ * Throughput should grow with the parallelism up to the number of cores.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CohortReportBenchmark {
+
+    private static final LocalDate END = LocalDate.parse("2016-09-28");
+    private static final int USERS = 1000;
+
+    @Param({"1", "2", "4", "8"})
+    private int parallelism;
+
+    @Param({"30", "90", "365"})
+    private int windowDays;
+
+    private ForkJoinPool pool;
+    private HealthService[] cohort;
+    private LocalDate start;
+
+    @Setup
+    public void setUp() {
+        pool = new ForkJoinPool(parallelism);
+        start = END.minusDays(windowDays - 1);
+        HealthServiceSetup setup = BenchmarkSetups.standard();
+        cohort = new HealthService[USERS];
+        for (int user = 0; user < USERS; user++) {
+            HealthService service = new HealthService(setup);
+            for (int day = 0; day < 365; day++) {
+                LocalDateTime time = END.minusDays(day).atTime(8, 0);
+                service.drink("water", "glass", (user + day) % 9, time);
+                service.eat("porridge", "kilocal", 300 + (user * day) % 700, time);
+                service.move("step", (user * 31 + day * 17) % 6000, time, time.plusMinutes(40));
+            }
+            cohort[user] = service;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public PeriodReport[] exact() {
+        return CohortPeriodReports.compute(pool, cohort, start, END, MedianMode.exact());
+    }
+
+    @Benchmark
+    public PeriodReport[] approximate() {
+        return CohortPeriodReports.compute(pool, cohort, start, END, MedianMode.approximate(0.01));
+    }
+}
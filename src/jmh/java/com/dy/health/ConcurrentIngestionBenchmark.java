@@ -0,0 +1,93 @@
+package com.dy.health;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ingestion throughput of one shared service as writer threads are added, once with every writer
+ * on its own day and once with all writers on the same day.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentIngestionBenchmark {
+
+    private static final LocalDate DATE = LocalDate.parse("2016-09-28");
+
+    @State(Scope.Benchmark)
+    public static class SharedService {
+        HealthService service;
+        final AtomicInteger writers = new AtomicInteger();
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            service = new HealthService(BenchmarkSetups.standard());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+        LocalDateTime ownDay;
+        LocalDateTime sharedDay;
+
+        @Setup
+        public void setUp(SharedService shared) {
+            ownDay = DATE.plusDays(shared.writers.incrementAndGet()).atTime(8, 0);
+            sharedDay = DATE.atTime(8, 0);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void distinctDays1(SharedService shared, Writer writer) {
+        shared.service.drink("water", "glass", 1, writer.ownDay);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void distinctDays2(SharedService shared, Writer writer) {
+        shared.service.drink("water", "glass", 1, writer.ownDay);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void distinctDays4(SharedService shared, Writer writer) {
+        shared.service.drink("water", "glass", 1, writer.ownDay);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void distinctDays8(SharedService shared, Writer writer) {
+        shared.service.drink("water", "glass", 1, writer.ownDay);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void sameDay1(SharedService shared, Writer writer) {
+        shared.service.drink("water", "glass", 1, writer.sharedDay);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void sameDay2(SharedService shared, Writer writer) {
+        shared.service.drink("water", "glass", 1, writer.sharedDay);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void sameDay4(SharedService shared, Writer writer) {
+        shared.service.drink("water", "glass", 1, writer.sharedDay);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void sameDay8(SharedService shared, Writer writer) {
+        shared.service.drink("water", "glass", 1, writer.sharedDay);
+    }
+}
@@ -0,0 +1,140 @@
+package com.dy.health;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Every public hot path of {@link HealthService} against a history of {@code rangeDays} days with
+ * {@code recordsPerDay} records each. Writers record into a day of their own after the history, so
+ * running with more threads ({@code -Djmh.threads=4}) measures the service rather than one day's lock.
+ * The history is rebuilt every iteration so ingestion does not pile up across the run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HealthServiceBenchmark {
+
+    private static final LocalDate START = LocalDate.parse("2016-01-01");
+    private static final String ALL = "all";
+    private static final String LUNCH = "lunch";
+
+    @Param({"10", "100", "1000"})
+    private int recordsPerDay;
+
+    @Param({"7", "30", "365"})
+    private int rangeDays;
+
+    private HealthService service;
+    private LocalDate end;
+    private final AtomicInteger writers = new AtomicInteger();
+
+    @Setup
+    public void setUpRange() {
+        end = START.plusDays(rangeDays - 1);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        TimeRange lunch = new TimeRange(LocalTime.of(12, 0), LocalTime.of(17, 0));
+        service = new HealthService(BenchmarkSetups.standard(LUNCH, lunch));
+        RecordBatch history = new RecordBatch(rangeDays * recordsPerDay);
+        int spacing = 24 * 60 * 60 / recordsPerDay;
+        for (int day = 0; day < rangeDays; day++) {
+            LocalDateTime midnight = START.plusDays(day).atStartOfDay();
+            for (int i = 0; i < recordsPerDay; i++) {
+                LocalDateTime time = midnight.plusSeconds(i * spacing + 1);
+                switch (i % 3) {
+                    case 0:
+                        history.drink("water", "glass", 1, time);
+                        break;
+                    case 1:
+                        history.eat("porridge", "kilocal", 100 + i % 7, time);
+                        break;
+                    default:
+                        history.move("step", 50 + i % 11, time, time.plusSeconds(spacing - 1));
+                }
+            }
+        }
+        service.ingest(history);
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+        LocalDateTime time;
+        LocalDateTime moveEnd;
+
+        @Setup
+        public void setUp(HealthServiceBenchmark benchmark) {
+            time = benchmark.end.plusDays(benchmark.writers.incrementAndGet()).atTime(12, 30);
+            moveEnd = time.plusMinutes(10);
+        }
+    }
+
+    @Benchmark
+    public void drink(Writer writer) {
+        service.drink("water", "glass", 1, writer.time);
+    }
+
+    @Benchmark
+    public void eat(Writer writer) {
+        service.eat("porridge", "kilocal", 300, writer.time);
+    }
+
+    @Benchmark
+    public void move(Writer writer) {
+        service.move("step", 100, writer.time, writer.moveEnd);
+    }
+
+    @Benchmark
+    public double drunkLiters() {
+        return service.drunk("liter", end);
+    }
+
+    @Benchmark
+    public double drunkGlasses() {
+        return service.drunk("glass", end);
+    }
+
+    @Benchmark
+    public double eatenAll() {
+        return service.eaten(ALL, "kilocal", end);
+    }
+
+    @Benchmark
+    public double eatenLunch() {
+        return service.eaten(LUNCH, "kilocal", end);
+    }
+
+    @Benchmark
+    public double movedSteps() {
+        return service.moved("step", end);
+    }
+
+    @Benchmark
+    public DayReport dayReport() {
+        return service.getDayReport(end);
+    }
+
+    @Benchmark
+    public UnfulfilledDayNormReport unfulfilledDayNormReport() {
+        return service.getUnfulfilledDayNormReport(end);
+    }
+
+    @Benchmark
+    public PeriodReport periodReport() {
+        return service.getPeriodReport(START, end);
+    }
+
+    @Benchmark
+    public PeriodReport approximatePeriodReport() {
+        return service.getPeriodReport(START, end, MedianMode.approximate(0.01));
+    }
+}
@@ -0,0 +1,61 @@
+package com.dy.health;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of instrumentation on the cheapest calls, with a disabled and an enabled instrumentation.
+ * The bare start/stop pair shows what the disabled mode adds to every public call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InstrumentationBenchmark {
+
+    private static final LocalDate DATE = LocalDate.parse("2016-09-28");
+
+    @Param({"false", "true"})
+    private boolean instrumented;
+
+    private HealthService service;
+    private Instrumentation instrumentation;
+    private LocalDateTime time;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        service = new HealthService(BenchmarkSetups.standard()
+                .setInstrumented(instrumented));
+        instrumentation = service.getInstrumentation();
+        time = DATE.atTime(8, 0);
+        for (int i = 0; i < 100; i++) {
+            service.drink("water", "glass", 1, time);
+            service.eat("porridge", "kilocal", 300, time);
+        }
+    }
+
+    @Benchmark
+    public void startStop() {
+        instrumentation.stop(Instrumentation.Operation.DRUNK, instrumentation.start());
+    }
+
+    @Benchmark
+    public void drink() {
+        service.drink("water", "glass", 1, time);
+    }
+
+    @Benchmark
+    public double drunk() {
+        return service.drunk("liter", DATE);
+    }
+
+    @Benchmark
+    public DayReport dayReport() {
+        return service.getDayReport(DATE);
+    }
+}
@@ -0,0 +1,61 @@
+package com.dy.health;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Intraday queries on a busy day answered from the day's quarter-hour sums and, for comparison, from
+ * its records, which is how a day that was moved off-heap answers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IntradayBenchmark {
+
+    private static final LocalDate DATE = LocalDate.parse("2016-09-28");
+    private static final int RECORDS = 3000;
+
+    @Param({"slots", "records"})
+    private String answeredFrom;
+
+    private HealthService service;
+    private final TimeRange afternoon = new TimeRange(LocalTime.of(12, 10), LocalTime.of(17, 50));
+
+    @Setup
+    public void setUp() {
+        TimeRange lunch = new TimeRange(LocalTime.NOON, LocalTime.of(17, 0));
+        service = new HealthService(BenchmarkSetups.standard("lunch", lunch)
+                .setOffHeapAfterDays("records".equals(answeredFrom) ? 1 : 0));
+        RecordBatch batch = new RecordBatch(RECORDS);
+        for (int i = 0; i < RECORDS / 3; i++) {
+            LocalDateTime time = DATE.atStartOfDay().plusSeconds(i * 86L);
+            batch.drink("water", "glass", 1, time);
+            batch.eat("porridge", "kilocal", 10 + i % 50, time);
+            batch.move("step", 100, time, time.plusSeconds(60));
+        }
+        service.ingest(batch);
+        service.drink("water", "glass", 1, DATE.plusDays(2).atStartOfDay()); // moves DATE off-heap for "records"
+    }
+
+    @Benchmark
+    public double eatenLunch() {
+        return service.eaten("lunch", "kilocal", DATE);
+    }
+
+    @Benchmark
+    public double eatenAfternoon() {
+        return service.eaten(afternoon, "kilocal", DATE);
+    }
+
+    @Benchmark
+    public double[] drunkByHour() {
+        return service.drunkByInterval("liter", DATE, 60);
+    }
+}
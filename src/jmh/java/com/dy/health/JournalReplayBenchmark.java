@@ -0,0 +1,58 @@
+package com.dy.health;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Startup replay of a journal into a fresh service, in records per second. Each record is one
+ * 32 byte entry, so the score times 32 is the replay bandwidth in bytes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JournalReplayBenchmark {
+
+    private static final int RECORDS = 1_000_000;
+
+    private HealthServiceSetup setup;
+    private Path directory;
+
+    @Setup
+    public void setUp() throws IOException {
+        setup = BenchmarkSetups.standard();
+        directory = Files.createTempDirectory("journal-replay");
+        RecordBatch batch = new RecordBatch(RECORDS);
+        LocalDate start = LocalDate.parse("2010-01-01");
+        for (int i = 0; i < RECORDS; i++) {
+            batch.drink("water", "glass", 1, start.plusDays(i / 100).atTime(8, 0).plusSeconds(i % 100));
+        }
+        try (RecordJournal journal = RecordJournal.open(directory, 0)) {
+            new HealthService(setup, journal).ingest(batch);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public HealthService replay() throws IOException {
+        try (RecordJournal journal = RecordJournal.open(directory, 0)) {
+            return new HealthService(setup, journal);
+        }
+    }
+}
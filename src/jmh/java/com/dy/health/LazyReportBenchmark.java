@@ -0,0 +1,75 @@
+package com.dy.health;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A summary that shows only steps and liters, read off an eager and a lazy period report, next to
+ * reading all four medians both ways.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LazyReportBenchmark {
+
+    private static final LocalDate TODAY = LocalDate.parse("2016-09-28");
+
+    @Param({"30", "365", "3650"})
+    private int days;
+
+    private HealthService service;
+    private LocalDate start;
+
+    @Setup
+    public void setUp() {
+        service = new HealthService(BenchmarkSetups.standard());
+        RecordBatch history = new RecordBatch();
+        for (int d = 0; d < days; d++) {
+            LocalDateTime time = TODAY.minusDays(d).atTime(8, 0);
+            history.drink("water", "glass", 1 + d % 8, time);
+            history.eat("porridge", "kilocal", 1000 + d * 7 % 700, time);
+            history.move("step", 1000 + d * 13 % 3000, time, time.plusMinutes(d % 90));
+        }
+        service.ingest(history);
+        start = TODAY.minusDays(days - 1);
+    }
+
+    @Benchmark
+    public void stepsAndLitersEager(Blackhole blackhole) {
+        PeriodReport report = service.getPeriodReport(start, TODAY);
+        blackhole.consume(report.getStepsMedian());
+        blackhole.consume(report.getLiquidLitersMedian());
+    }
+
+    @Benchmark
+    public void stepsAndLitersLazy(Blackhole blackhole) {
+        PeriodReport report = service.lazyPeriodReport(start, TODAY);
+        blackhole.consume(report.getStepsMedian());
+        blackhole.consume(report.getLiquidLitersMedian());
+    }
+
+    @Benchmark
+    public void allEager(Blackhole blackhole) {
+        PeriodReport report = service.getPeriodReport(start, TODAY);
+        blackhole.consume(report.getStepsMedian());
+        blackhole.consume(report.getHoursMovedMedian());
+        blackhole.consume(report.getKilocalsMedian());
+        blackhole.consume(report.getLiquidLitersMedian());
+    }
+
+    @Benchmark
+    public void allLazy(Blackhole blackhole) {
+        PeriodReport report = service.lazyPeriodReport(start, TODAY);
+        blackhole.consume(report.getStepsMedian());
+        blackhole.consume(report.getHoursMovedMedian());
+        blackhole.consume(report.getKilocalsMedian());
+        blackhole.consume(report.getLiquidLitersMedian());
+    }
+}
@@ -0,0 +1,86 @@
+package com.dy.health;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Period report medians over growing ranges: the previous boxed list sort against quickselect
+ * and the relative-error sketch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MedianBenchmark {
+
+    private static final LocalDate START = LocalDate.parse("2010-01-01");
+
+    @Param({"30", "365", "3650"})
+    private int rangeDays;
+
+    private HealthService service;
+    private LocalDate end;
+    private double[] dailySteps;
+    private double[] buffer;
+
+    @Setup
+    public void setUp() {
+        service = new HealthService(BenchmarkSetups.standard());
+        Random random = new Random(1);
+        dailySteps = new double[rangeDays];
+        for (int day = 0; day < rangeDays; day++) {
+            LocalDateTime morning = START.plusDays(day).atTime(8, 0);
+            dailySteps[day] = random.nextInt(12000);
+            service.drink("water", "glass", 1 + random.nextInt(8), morning);
+            service.eat("porridge", "kilocal", 800 + random.nextInt(1500), morning);
+            service.move("step", dailySteps[day], morning, morning.plusMinutes(random.nextInt(180)));
+        }
+        end = START.plusDays(rangeDays - 1);
+        buffer = new double[rangeDays];
+    }
+
+    @Benchmark
+    public PeriodReport periodReportExact() {
+        return service.getPeriodReport(START, end, MedianMode.exact());
+    }
+
+    @Benchmark
+    public PeriodReport periodReportApproximate() {
+        return service.getPeriodReport(START, end, MedianMode.approximate(0.01));
+    }
+
+    @Benchmark
+    public double medianBoxedSort() {
+        List<Double> list = new ArrayList<>();
+        for (double value : dailySteps) {
+            list.add(value);
+        }
+        list.sort(Comparator.naturalOrder());
+        int size = list.size();
+        return size % 2 == 1 ? list.get(size / 2) : (list.get(size / 2) + list.get(size / 2 - 1)) / 2.0;
+    }
+
+    @Benchmark
+    public double medianQuickselect() {
+        System.arraycopy(dailySteps, 0, buffer, 0, rangeDays);
+        return ExactMedian.median(buffer, rangeDays);
+    }
+
+    @Benchmark
+    public double medianSketch() {
+        QuantileSketch sketch = new QuantileSketch(0.01);
+        for (double value : dailySteps) {
+            sketch.add(value);
+        }
+        return sketch.median();
+    }
+}
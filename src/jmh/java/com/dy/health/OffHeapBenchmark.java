@@ -0,0 +1,78 @@
+package com.dy.health;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ten years of history kept on the heap and with everything but the last month off-heap: queries
+ * on an old day, on the current day and over a year. The heap in use after a full collection is
+ * reported as the {@code heapUsedKiB} counter of each iteration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class OffHeapBenchmark {
+
+    private static final LocalDate TODAY = LocalDate.parse("2016-09-28");
+    private static final int DAYS = 3650;
+    private static final int RECORDS_PER_DAY = 60;
+
+    @Param({"0", "30"})
+    private int offHeapAfterDays;
+
+    private HealthService service;
+    private final LocalDate oldDay = TODAY.minusYears(5);
+
+    @Setup
+    public void setUp() {
+        TimeRange breakfast = new TimeRange(LocalTime.of(2, 0), LocalTime.of(11, 0));
+        service = new HealthService(BenchmarkSetups.standard("breakfast", breakfast)
+                .setOffHeapAfterDays(offHeapAfterDays));
+        RecordBatch day = new RecordBatch(RECORDS_PER_DAY);
+        for (int d = DAYS - 1; d >= 0; d--) {
+            day.clear();
+            for (int i = 0; i < RECORDS_PER_DAY / 3; i++) {
+                LocalDateTime time = TODAY.minusDays(d).atTime(6, 0).plusMinutes(i * 40L);
+                day.drink("water", "glass", 1, time);
+                day.eat("porridge", "kilocal", 50 + i, time);
+                day.move("step", 100 + i, time, time.plusMinutes(10));
+            }
+            service.ingest(day);
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Heap {
+        public long heapUsedKiB;
+
+        @TearDown(Level.Iteration)
+        public void measure() {
+            System.gc();
+            heapUsedKiB = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / 1024;
+        }
+    }
+
+    @Benchmark
+    public double breakfastOnOldDay(Heap heap) {
+        return service.eaten("breakfast", "kilocal", oldDay);
+    }
+
+    @Benchmark
+    public double breakfastToday(Heap heap) {
+        return service.eaten("breakfast", "kilocal", TODAY);
+    }
+
+    @Benchmark
+    public PeriodReport lastYear(Heap heap) {
+        return service.getPeriodReport(TODAY.minusDays(364), TODAY);
+    }
+}
@@ -0,0 +1,86 @@
+package com.dy.health;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every metric's statistics over a period from one period report, against what callers did before:
+ * the medians from a report and everything else from their own pass over each day's totals.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PeriodStatisticsBenchmark {
+
+    private static final LocalDate TODAY = LocalDate.parse("2016-09-28");
+
+    @Param({"30", "365", "3650"})
+    private int days;
+
+    private HealthService service;
+    private LocalDate start;
+
+    @Setup
+    public void setUp() {
+        service = new HealthService(BenchmarkSetups.standard());
+        RecordBatch history = new RecordBatch();
+        for (int d = 0; d < days; d++) {
+            LocalDateTime time = TODAY.minusDays(d).atTime(8, 0);
+            history.drink("water", "glass", 1 + d % 8, time);
+            history.eat("porridge", "kilocal", 1000 + d * 7 % 700, time);
+            history.move("step", 1000 + d * 13 % 3000, time, time.plusMinutes(d % 90));
+        }
+        service.ingest(history);
+        start = TODAY.minusDays(days - 1);
+    }
+
+    @Benchmark
+    public void fusedReport(Blackhole blackhole) {
+        PeriodReport report = service.getPeriodReport(start, TODAY);
+        blackhole.consume(report.getStepsStatistics());
+        blackhole.consume(report.getHoursMovedStatistics());
+        blackhole.consume(report.getKilocalsStatistics());
+        blackhole.consume(report.getLiquidLitersStatistics());
+    }
+
+    @Benchmark
+    public void reportAndDayScans(Blackhole blackhole) {
+        blackhole.consume(service.getPeriodReport(start, TODAY));
+        double[][] totals = new double[4][days];
+        for (int d = 0; d < days; d++) {
+            LocalDate date = start.plusDays(d);
+            totals[0][d] = service.moved("step", date);
+            totals[1][d] = service.moved("hour", date);
+            totals[2][d] = service.eaten("all", "kilocal", date);
+            totals[3][d] = service.drunk("liter", date);
+        }
+        double[] norms = {2000, 2, 1300, 2};
+        for (int metric = 0; metric < totals.length; metric++) {
+            double[] values = totals[metric];
+            double sum = 0;
+            int meetingNorm = 0;
+            for (double value : values) {
+                sum += value;
+                if (value >= norms[metric]) meetingNorm++;
+            }
+            double mean = sum / days;
+            double squares = 0;
+            for (double value : values) {
+                squares += (value - mean) * (value - mean);
+            }
+            Arrays.sort(values);
+            blackhole.consume(mean);
+            blackhole.consume(Math.sqrt(squares / days));
+            blackhole.consume(values[0] + values[days - 1] + values[(days - 1) / 10] + values[(days - 1) * 9 / 10]);
+            blackhole.consume(meetingNorm);
+        }
+    }
+}
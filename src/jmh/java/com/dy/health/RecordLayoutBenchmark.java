@@ -0,0 +1,141 @@
+package com.dy.health;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the columnar day store against the previous layout of one boxed record per call
+ * kept in a {@code HashMap<LocalDate, List<Record>>}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RecordLayoutBenchmark {
+
+    private static final LocalDate DATE = LocalDate.parse("2016-09-28");
+
+    @Param({"16", "256", "4096"})
+    private int recordsPerDay;
+
+    private HealthServiceSetup setup;
+    private HealthService columnar;
+    private BoxedLayout boxed;
+    private LocalDateTime[] times;
+
+    @Setup
+    public void setUp() {
+        setup = BenchmarkSetups.standard("breakfast", new TimeRange(LocalTime.of(2, 0), LocalTime.of(12, 0)));
+        times = new LocalDateTime[recordsPerDay];
+        for (int i = 0; i < recordsPerDay; i++) {
+            times[i] = DATE.atStartOfDay().plusSeconds(i * (24L * 60 * 60 / recordsPerDay));
+        }
+        columnar = new HealthService(setup);
+        boxed = new BoxedLayout(setup.getNamedTimeRanges());
+        for (int i = 0; i < recordsPerDay; i++) {
+            columnar.drink("water", "glass", 1, times[i]);
+            columnar.eat("sandwich", "kilocal", 200, times[i]);
+            boxed.add("drink", "water", "glass", 1, times[i]);
+            boxed.add("food", "sandwich", "kilocal", 200, times[i]);
+        }
+    }
+
+    @Benchmark
+    public HealthService ingestColumnar() {
+        HealthService service = new HealthService(setup);
+        for (LocalDateTime time : times) {
+            service.drink("water", "glass", 1, time);
+        }
+        return service;
+    }
+
+    @Benchmark
+    public BoxedLayout ingestBoxed() {
+        BoxedLayout layout = new BoxedLayout(setup.getNamedTimeRanges());
+        for (LocalDateTime time : times) {
+            layout.add("drink", "water", "glass", 1, time);
+        }
+        return layout;
+    }
+
+    @Benchmark
+    public double drunkColumnar() {
+        return columnar.drunk("liter", DATE);
+    }
+
+    @Benchmark
+    public double drunkBoxed() {
+        return boxed.calculate("drink", "liter", "all", DATE);
+    }
+
+    @Benchmark
+    public double breakfastColumnar() {
+        return columnar.eaten("breakfast", "kilocal", DATE);
+    }
+
+    @Benchmark
+    public double breakfastBoxed() {
+        return boxed.calculate("food", "kilocal", "breakfast", DATE);
+    }
+
+    static final class BoxedLayout {
+        private final Map<LocalDate, List<Record>> records = new HashMap<>();
+        private final Map<String, TimeRange> namedTimeRanges;
+
+        BoxedLayout(Map<String, TimeRange> namedTimeRanges) {
+            this.namedTimeRanges = namedTimeRanges;
+        }
+
+        void add(String type, String name, String measureUnit, double quantity, LocalDateTime dateTime) {
+            LocalDate date = dateTime.toLocalDate();
+            records.putIfAbsent(date, new ArrayList<>());
+            records.get(date).add(new Record(type, name, measureUnit, quantity, dateTime, Duration.ZERO));
+        }
+
+        double calculate(String type, String measureUnit, String timeRange, LocalDate date) {
+            return records.get(date).stream()
+                    .filter(record -> record.type.equals(type))
+                    .map(record -> {
+                        if (record.measureUnit.equals(measureUnit)) {
+                            TimeRange range = namedTimeRanges.get(timeRange);
+                            return range != null && range.isWithinTimeRange(record.dateTime.toLocalTime())
+                                    ? record.quantity : 0D;
+                        }
+                        return "liter".equals(measureUnit) && "glass".equals(record.measureUnit)
+                                ? record.quantity * 0.25 : 0D;
+                    })
+                    .reduce((a, b) -> a + b)
+                    .orElse(0D);
+        }
+    }
+
+    static final class Record {
+        final String type;
+        final String name;
+        final String measureUnit;
+        final double quantity;
+        final LocalDateTime dateTime;
+        final Duration duration;
+
+        Record(String type, String name, String measureUnit, double quantity,
+               LocalDateTime dateTime, Duration duration) {
+            this.type = type;
+            this.name = name;
+            this.measureUnit = measureUnit;
+            this.quantity = quantity;
+            this.dateTime = dateTime;
+            this.duration = duration;
+        }
+    }
+}
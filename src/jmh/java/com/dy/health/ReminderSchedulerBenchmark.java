@@ -0,0 +1,47 @@
+package com.dy.health;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduling and cancelling a reminder with a growing number of reminders already pending; both
+ * should stay flat.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReminderSchedulerBenchmark {
+
+    @Param({"1000", "1000000"})
+    private int pending;
+
+    private ReminderScheduler scheduler;
+    private HealthService service;
+    private ReminderRule rule;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Clock clock = Clock.fixed(Instant.parse("2016-09-28T05:00:00Z"), ZoneId.of("Europe/Berlin"));
+        scheduler = new ReminderScheduler(clock, (reminder, left) -> { });
+        service = new HealthService(BenchmarkSetups.standard());
+        for (int i = 0; i < pending; i++) {
+            scheduler.schedule("user" + i, service, ReminderRule.drink(LocalTime.ofSecondOfDay(i % 86_400)));
+        }
+        rule = ReminderRule.move(LocalTime.of(18, 0));
+    }
+
+    @Benchmark
+    public Reminder scheduleAndCancel() {
+        Reminder reminder = scheduler.schedule("bob", service, rule);
+        reminder.cancel();
+        return reminder;
+    }
+}
@@ -0,0 +1,73 @@
+package com.dy.health;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A dashboard over three years of history that asks for last year's report and yesterday's report
+ * after every record of today, with and without the report cache. The cache hits and misses of each
+ * iteration are reported as counters.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReportCacheBenchmark {
+
+    private static final LocalDate TODAY = LocalDate.parse("2016-09-28");
+    private static final int DAYS = 3 * 365;
+
+    @Param({"0", "1024"})
+    private int reportCacheDays;
+
+    private HealthService service;
+    private final LocalDateTime now = TODAY.atTime(12, 0);
+    private final LocalDate yearAgo = TODAY.minusDays(365);
+    private final LocalDate yesterday = TODAY.minusDays(1);
+
+    @Setup
+    public void setUp() {
+        service = new HealthService(BenchmarkSetups.standard()
+                .setReportCacheDays(reportCacheDays));
+        RecordBatch history = new RecordBatch();
+        for (int d = DAYS; d > 0; d--) {
+            LocalDateTime time = TODAY.minusDays(d).atTime(8, 0);
+            history.drink("water", "glass", 1 + d % 8, time);
+            history.eat("porridge", "kilocal", 1000 + d % 700, time);
+            history.move("step", 1000 + d % 3000, time, time.plusHours(1));
+        }
+        service.ingest(history);
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Cache {
+        public long cacheHits;
+        public long cacheMisses;
+        private ReportCacheStatistics before;
+
+        @Setup(Level.Iteration)
+        public void start(ReportCacheBenchmark benchmark) {
+            before = benchmark.service.getReportCacheStatistics();
+        }
+
+        @TearDown(Level.Iteration)
+        public void count(ReportCacheBenchmark benchmark) {
+            ReportCacheStatistics after = benchmark.service.getReportCacheStatistics();
+            cacheHits = after.getHitCount() - before.getHitCount();
+            cacheMisses = after.getMissCount() - before.getMissCount();
+        }
+    }
+
+    @Benchmark
+    public PeriodReport recordTodayThenReport(Cache cache) {
+        service.drink("water", "glass", 1, now);
+        service.getDayReport(yesterday);
+        return service.getPeriodReport(yearAgo, yesterday);
+    }
+}
@@ -0,0 +1,93 @@
+package com.dy.health;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of a sync storm on localhost: every user sends all of their calls at once, writes with a
+ * day report every fifth call, either through {@link HealthRequestExecutor} or through a new thread
+ * per call as a hand rolled adapter does. After each storm the throughput and the p99 latency of a
+ * call are printed, counted from the start of the storm when all calls arrived: whatever the adapter
+ * spends on dispatching a call delays the ones behind it.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestStormBenchmark {
+
+    private static final LocalDate DATE = LocalDate.parse("2016-09-28");
+    private static final int USERS = 2000;
+    private static final int CALLS_PER_USER = 10;
+
+    @Param({"threadPerCall", "frontEnd"})
+    private String dispatch;
+
+    private final String[] users = new String[USERS];
+    private final Executor threadPerCall = runnable -> new Thread(runnable).start();
+    private final Map<String, HealthService> services = new HashMap<>();
+    private HealthRequestExecutor frontEnd;
+    private LatencyHistogram latencies;
+    private long stormNanos;
+
+    @Setup
+    public void setUp() {
+        HealthServiceSetup setup = BenchmarkSetups.standard();
+        frontEnd = new HealthRequestExecutor();
+        for (int i = 0; i < USERS; i++) {
+            users[i] = "user-" + i;
+            frontEnd.register(users[i], setup);
+            services.put(users[i], new HealthService(setup));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void newHistogram() {
+        latencies = new LatencyHistogram();
+    }
+
+    @Benchmark
+    public void storm() {
+        long start = System.nanoTime();
+        CompletableFuture<?>[] calls = new CompletableFuture<?>[USERS * CALLS_PER_USER];
+        for (int call = 0; call < CALLS_PER_USER; call++) {
+            LocalDateTime time = DATE.atTime(8, 0).plusMinutes(call);
+            boolean report = call % 5 == 4;
+            for (int user = 0; user < USERS; user++) {
+                calls[call * USERS + user] = call(users[user], report, time)
+                        .whenComplete((result, failure) -> latencies.record(System.nanoTime() - start));
+            }
+        }
+        CompletableFuture.allOf(calls).join();
+        stormNanos = System.nanoTime() - start;
+    }
+
+    private CompletableFuture<?> call(String user, boolean report, LocalDateTime time) {
+        if (dispatch.equals("frontEnd")) {
+            return report ? frontEnd.getDayReport(user, DATE) : frontEnd.drink(user, "water", "glass", 1, time);
+        }
+        HealthService service = services.get(user);
+        return report ? CompletableFuture.supplyAsync(() -> service.getDayReport(DATE), threadPerCall)
+                : CompletableFuture.runAsync(() -> service.drink("water", "glass", 1, time), threadPerCall);
+    }
+
+    @TearDown(Level.Iteration)
+    public void printLoad() {
+        System.out.println("\n" + dispatch + ": " + latencies.count() * 1_000_000_000L / stormNanos + " calls/s, p99 "
+                + latencies.percentile(0.99) / 1000 + " us, max " + latencies.max() / 1000 + " us");
+    }
+
+    @TearDown
+    public void tearDown() {
+        frontEnd.close();
+    }
+}
@@ -0,0 +1,66 @@
+package com.dy.health;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A soak run: every iteration records a century of days, one batch per day, into a single service
+ * that keeps every record or only a year of them, the last month raw. The heap in use after a full
+ * collection at the end of each iteration is reported as the {@code heapUsedKiB} counter; with
+ * retention it stays flat.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, batchSize = RetentionBenchmark.DAYS)
+@Measurement(iterations = 5, batchSize = RetentionBenchmark.DAYS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class RetentionBenchmark {
+
+    static final int DAYS = 36500;
+    private static final int RECORDS_PER_DAY = 24;
+
+    @Param({"false", "true"})
+    private boolean retained;
+
+    private HealthService service;
+    private final RecordBatch day = new RecordBatch(RECORDS_PER_DAY);
+    private LocalDate date = LocalDate.parse("2016-09-28");
+
+    @Setup
+    public void setUp() {
+        service = new HealthService(BenchmarkSetups.standard()
+                .setRawRecordDays(retained ? 30 : 0)
+                .setRetentionDays(retained ? 365 : 0));
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Heap {
+        public long heapUsedKiB;
+
+        @TearDown(Level.Iteration)
+        public void measure(RetentionBenchmark benchmark) {
+            benchmark.service.eviction().join();
+            System.gc();
+            heapUsedKiB = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / 1024;
+        }
+    }
+
+    @Benchmark
+    public void recordDay(Heap heap) {
+        day.clear();
+        for (int i = 0; i < RECORDS_PER_DAY / 3; i++) {
+            LocalDateTime time = date.atTime(6, 0).plusMinutes(i * 90L);
+            day.drink("water", "glass", 1, time);
+            day.eat("porridge", "kilocal", 50 + i, time);
+            day.move("step", 100 + i, time, time.plusMinutes(10));
+        }
+        service.ingest(day);
+        date = date.plusDays(1);
+    }
+}
@@ -0,0 +1,68 @@
+package com.dy.health;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The daily slide of a "last n days" report: a rolling report advanced by a day against a period
+ * report recomputed over the new window.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RollingReportBenchmark {
+
+    private static final LocalDate START = LocalDate.parse("2010-01-01");
+    private static final int HISTORY_DAYS = 20_000;
+
+    @Param({"7", "30", "365"})
+    private int windowDays;
+
+    private HealthService service;
+    private RollingPeriodReport rolling;
+    private LocalDate end;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        service = new HealthService(BenchmarkSetups.standard());
+        RecordBatch history = new RecordBatch();
+        for (int day = 0; day < HISTORY_DAYS; day++) {
+            LocalDateTime time = START.plusDays(day).atTime(8, 0);
+            history.drink("water", "glass", day % 9, time);
+            history.eat("porridge", "kilocal", 300 + day * 7 % 900, time);
+            history.move("step", day * 13 % 6000, time, time.plusMinutes(40));
+        }
+        service.ingest(history);
+        end = START.plusDays(windowDays - 1);
+        rolling = service.rollingPeriodReport(end, windowDays);
+    }
+
+    @Benchmark
+    public PeriodReport slide() {
+        if (end.toEpochDay() - START.toEpochDay() == HISTORY_DAYS) {
+            rewind(); // once per HISTORY_DAYS calls
+            rolling.close();
+            rolling = service.rollingPeriodReport(end, windowDays);
+        }
+        end = end.plusDays(1);
+        rolling.advance();
+        return rolling.getReport();
+    }
+
+    @Benchmark
+    public PeriodReport recompute() {
+        if (end.toEpochDay() - START.toEpochDay() == HISTORY_DAYS) rewind();
+        end = end.plusDays(1);
+        return service.getPeriodReport(end.minusDays(windowDays - 1), end);
+    }
+
+    private void rewind() {
+        end = START.plusDays(windowDays - 1);
+    }
+}
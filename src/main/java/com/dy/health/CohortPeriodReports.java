@@ -0,0 +1,94 @@
+package com.dy.health;
+
+import java.time.LocalDate;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Period reports of many services as fork-join tasks. The users are halved down to one per task,
+ * and a range longer than {@link #DAYS_PER_TASK} is halved as well, its parts' medians merged back
+ * together, so a cohort of few users with long ranges keeps every worker busy just like a large one.
+ */
+final class CohortPeriodReports {
+    static final int DAYS_PER_TASK = 128;
+
+    private CohortPeriodReports() {
+    }
+
+    static PeriodReport[] compute(ForkJoinPool pool, HealthService[] services, LocalDate startDate,
+                                  LocalDate endDate, MedianMode medianMode) {
+        PeriodReport[] reports = new PeriodReport[services.length];
+        UsersTask task = new UsersTask(services, reports, 0, services.length, startDate, endDate, medianMode);
+        if (ForkJoinTask.getPool() == pool) { // already on one of its workers
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+        return reports;
+    }
+
+    private static final class UsersTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final HealthService[] services;
+        private final PeriodReport[] reports;
+        private final int from;
+        private final int to;
+        private final LocalDate startDate;
+        private final LocalDate endDate;
+        private final MedianMode medianMode;
+
+        UsersTask(HealthService[] services, PeriodReport[] reports, int from, int to, LocalDate startDate,
+                  LocalDate endDate, MedianMode medianMode) {
+            this.services = services;
+            this.reports = reports;
+            this.from = from;
+            this.to = to;
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.medianMode = medianMode;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new UsersTask(services, reports, from, middle, startDate, endDate, medianMode),
+                        new UsersTask(services, reports, middle, to, startDate, endDate, medianMode));
+            } else if (to > from) {
+                int days = (int) Math.max(0, endDate.toEpochDay() - startDate.toEpochDay() + 1);
+                reports[from] = new DaysTask(services[from], startDate.toEpochDay(), days, medianMode).compute()
+                        .report(startDate, endDate);
+            }
+        }
+    }
+
+    private static final class DaysTask extends RecursiveTask<PeriodAccumulator> {
+        private static final long serialVersionUID = 1L;
+
+        private final HealthService service;
+        private final long startDay;
+        private final int days;
+        private final MedianMode medianMode;
+
+        DaysTask(HealthService service, long startDay, int days, MedianMode medianMode) {
+            this.service = service;
+            this.startDay = startDay;
+            this.days = days;
+            this.medianMode = medianMode;
+        }
+
+        @Override
+        protected PeriodAccumulator compute() {
+            if (days <= DAYS_PER_TASK) {
+                return service.accumulate(startDay, days, medianMode);
+            }
+            int half = days / 2;
+            DaysTask later = new DaysTask(service, startDay + half, days - half, medianMode);
+            later.fork();
+            return new DaysTask(service, startDay, half, medianMode).compute().merge(later.join());
+        }
+    }
+}
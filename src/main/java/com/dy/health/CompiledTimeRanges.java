@@ -0,0 +1,53 @@
+package com.dy.health;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Named time ranges resolved once into second-of-day bounds, addressed by a small integer id.
+ * Like {@link TimeRange}, a range excludes its start and includes its end.
+ */
+final class CompiledTimeRanges {
+    static final int UNKNOWN = -1;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final int[] starts;
+    private final int[] ends;
+    private final boolean[] unbound;
+
+    CompiledTimeRanges(Map<String, TimeRange> namedTimeRanges) {
+        int size = namedTimeRanges.size();
+        starts = new int[size];
+        ends = new int[size];
+        unbound = new boolean[size];
+        for (Map.Entry<String, TimeRange> entry : namedTimeRanges.entrySet()) {
+            int id = ids.size();
+            TimeRange range = entry.getValue();
+            starts[id] = range.startSecond();
+            ends[id] = range.endSecond();
+            unbound[id] = range.isTimeRangeUnbound();
+            ids.put(entry.getKey(), id);
+        }
+    }
+
+    int idOf(String name) {
+        Integer id = ids.get(name);
+        return id == null ? UNKNOWN : id;
+    }
+
+    boolean contains(int id, int secondOfDay) {
+        return id != UNKNOWN && (unbound[id] || secondOfDay > starts[id] && secondOfDay <= ends[id]);
+    }
+
+    boolean isUnbound(int id) {
+        return unbound[id];
+    }
+
+    int start(int id) {
+        return starts[id];
+    }
+
+    int end(int id) {
+        return ends[id];
+    }
+}
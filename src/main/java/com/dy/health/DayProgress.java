@@ -0,0 +1,30 @@
+package com.dy.health;
+
+import java.time.LocalDate;
+
+/**
+ * What is left of a day's norms and how far each is done, as published to day progress subscribers.
+ */
+public class DayProgress {
+    private final LocalDate date;
+    private final UnfulfilledDayNormReport unfulfilledDayNormReport;
+    private final DayReport dayReport;
+
+    public DayProgress(LocalDate date, UnfulfilledDayNormReport unfulfilledDayNormReport, DayReport dayReport) {
+        this.date = date;
+        this.unfulfilledDayNormReport = unfulfilledDayNormReport;
+        this.dayReport = dayReport;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public UnfulfilledDayNormReport getUnfulfilledDayNormReport() {
+        return unfulfilledDayNormReport;
+    }
+
+    public DayReport getDayReport() {
+        return dayReport;
+    }
+}
@@ -0,0 +1,139 @@
+package com.dy.health;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Day progress subscriptions of one service. A change only marks the day's subscriptions dirty and
+ * schedules a delivery on the subscriber's executor; the delivery computes the progress at that
+ * moment, so any number of changes before it turn into a single item. A day never completes.
+ */
+final class DayProgressPublisher {
+    private final Map<LocalDate, List<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final Function<LocalDate, DayProgress> progress;
+
+    DayProgressPublisher(Function<LocalDate, DayProgress> progress) {
+        this.progress = progress;
+    }
+
+    void subscribe(LocalDate date, Flow.Subscriber<? super DayProgress> subscriber, Executor executor) {
+        Subscription subscription = new Subscription(date, subscriber, executor);
+        subscriptions.computeIfAbsent(date, key -> new CopyOnWriteArrayList<>()).add(subscription);
+        subscription.signal();
+    }
+
+    void changed(LocalDate date) {
+        if (subscriptions.isEmpty()) return;
+        List<Subscription> day = subscriptions.get(date);
+        if (day == null) return;
+        for (Subscription subscription : day) {
+            subscription.signal();
+        }
+    }
+
+    private void remove(Subscription subscription) {
+        subscriptions.computeIfPresent(subscription.date, (date, day) -> {
+            day.remove(subscription);
+            return day.isEmpty() ? null : day;
+        });
+    }
+
+    private final class Subscription implements Flow.Subscription, Runnable {
+        private final LocalDate date;
+        private final Flow.Subscriber<? super DayProgress> subscriber;
+        private final Executor executor;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile boolean dirty;
+        private volatile boolean cancelled;
+        private volatile Throwable misuse;
+        private boolean subscribed;
+
+        Subscription(LocalDate date, Flow.Subscriber<? super DayProgress> subscriber, Executor executor) {
+            this.date = date;
+            this.subscriber = subscriber;
+            this.executor = executor;
+        }
+
+        void signal() {
+            dirty = true;
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                misuse = new IllegalArgumentException("Non-positive request: " + n);
+            } else {
+                demand.accumulateAndGet(n, (current, more) -> current + more < 0 ? Long.MAX_VALUE : current + more);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            remove(this);
+        }
+
+        private void schedule() {
+            if (work.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        /**
+         * Runs on the executor with at most one instance at a time; signals that arrive meanwhile
+         * make it loop once more instead of scheduling again.
+         */
+        @Override
+        public void run() {
+            for (int missed = 1; missed != 0; missed = work.addAndGet(-missed)) {
+                if (cancelled) continue;
+                if (!subscribed) {
+                    subscribed = true;
+                    if (!deliver(() -> subscriber.onSubscribe(this))) continue;
+                }
+                if (misuse != null) {
+                    cancel();
+                    subscriber.onError(misuse);
+                } else if (dirty && demand.get() > 0) {
+                    dirty = false;
+                    DayProgress next;
+                    try {
+                        next = progress.apply(date);
+                    } catch (RuntimeException e) {
+                        cancel();
+                        subscriber.onError(e);
+                        continue;
+                    }
+                    demand.accumulateAndGet(1, (current, one) -> current == Long.MAX_VALUE ? current : current - one);
+                    deliver(() -> subscriber.onNext(next));
+                }
+            }
+        }
+
+        /**
+         * Calls the subscriber; one that throws breaks the contract, so its subscription is cancelled
+         * and it is told why.
+         */
+        private boolean deliver(Runnable signal) {
+            try {
+                signal.run();
+                return true;
+            } catch (Throwable e) {
+                cancel();
+                subscriber.onError(e);
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,479 @@
+package com.dy.health;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * All records of a single day kept as parallel primitive columns instead of one object per record.
+ * <p>
+ * Writers of the same day serialize on the instance; readers never lock. Every write publishes a new
+ * immutable {@link Segment} so a reader works on a consistent view of the records and their totals
+ * while writers go on appending. Slots below a published size never change, which lets consecutive
+ * segments share the same arrays until they need to grow.
+ * <p>
+ * Records are kept ordered by time so that time range queries can binary search their bounds. Appends
+ * in time order (the usual case) go to the end; an earlier record is merged into fresh columns.
+ * <p>
+ * A day that is no longer written to can be {@link #moveOffHeap() moved off-heap}: its columns are
+ * packed into one direct buffer of {@link #OFF_HEAP_ENTRY} bytes per record that segments read from
+ * just like from the columns. Writing to such a day unpacks the columns again.
+ * <p>
+ * Heap segments also carry the running total of each metric through each of {@link #SLOTS} intraday
+ * slots: slot 0 holds the records at midnight and slot {@code k} those later than {@code k - 1}
+ * quarter hours and up to {@code k}, so any whole number of slots sums up with two lookups. A running
+ * total is settled once a record lands in a later slot; appends in time order only settle slots no
+ * published segment reads yet, which lets consecutive segments share the same array like they share
+ * the columns. Off-heap days drop the running totals.
+ * <p>
+ * A day past its raw record retention is {@link #summarize() summarized}: only its totals are kept,
+ * and the records behind a total that is NaN.
+ */
+final class DayRecords {
+    static final byte DRINK = 0;
+    static final byte FOOD = 1;
+    static final byte MOVE = 2;
+
+    static final int OFF_HEAP_ENTRY = 32;
+    static final int SLOT_SECONDS = 15 * 60;
+    static final int SLOTS = 24 * 60 * 60 / SLOT_SECONDS + 1;
+
+    private static final int INITIAL_CAPACITY = 8;
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+    // epochSecond(8) quantity(8) durationSeconds(4) unit(4) name(4) type(1), padded to OFF_HEAP_ENTRY
+    private static final int QUANTITY = 8;
+    private static final int DURATION = 16;
+    private static final int UNIT = 20;
+    private static final int NAME = 24;
+    private static final int TYPE = 28;
+    private static final int METRICS = Metric.VALUES.length;
+
+    private volatile Segment segment;
+
+    DayRecords() {
+        this(INITIAL_CAPACITY);
+    }
+
+    DayRecords(int capacity) {
+        segment = new Segment(new Columns(Math.max(capacity, 1)), 0, new double[METRICS],
+                new double[METRICS * SLOTS], 0);
+    }
+
+    /**
+     * The slot a record {@code secondOfDay} seconds into its day falls in.
+     */
+    static int slotOf(int secondOfDay) {
+        return Math.floorDiv(secondOfDay + SLOT_SECONDS - 1, SLOT_SECONDS);
+    }
+
+    Segment segment() {
+        return segment;
+    }
+
+    /**
+     * @param contribution amount added to each metric total, indexed by {@link Metric#ordinal()}
+     */
+    synchronized void add(byte type, int name, int unit, double quantity, long epochSecond, int durationSecond,
+                          double[] contribution) {
+        Segment current = segment;
+        int size = current.size;
+        Columns columns;
+        Columns source = current.columns();
+        if (size == 0 || current.epochSecond(size - 1) <= epochSecond) {
+            columns = source.ensureCapacity(size + 1, size);
+            columns.set(size, type, name, unit, quantity, epochSecond, durationSecond);
+        } else {
+            int at = current.upperBound(epochSecond);
+            columns = new Columns(Math.max(INITIAL_CAPACITY, size * 2));
+            columns.copy(source, 0, 0, at);
+            columns.set(at, type, name, unit, quantity, epochSecond, durationSecond);
+            columns.copy(source, at, at + 1, size - at);
+        }
+        double[] runningTotals = current.runningTotals;
+        int settled = current.settled;
+        if (runningTotals != null) {
+            int slot = slotOf((int) Math.floorMod(epochSecond, SECONDS_PER_DAY));
+            if (slot >= settled) {
+                settle(runningTotals, settled, slot, current.totals);
+                settled = slot;
+            } else {
+                runningTotals = current.settledCopy();
+                for (int metric = 0; metric < METRICS; metric++) {
+                    for (int through = slot; through < settled; through++) {
+                        runningTotals[metric * SLOTS + through] += contribution[metric];
+                    }
+                }
+            }
+        }
+        publish(current, columns, size + 1, contribution, runningTotals, settled);
+    }
+
+    /**
+     * Adds the batch entries listed in {@code order[from, to)} and publishes them as a single segment.
+     *
+     * @param contributions what each batch entry adds to each metric, {@code METRICS} values per entry
+     * @param contribution  their sum over the entries added
+     */
+    synchronized void addAll(RecordBatch batch, int[] order, int from, int to, int[] names, int[] units,
+                             double[] contributions, double[] contribution) {
+        Segment current = segment;
+        int size = current.size;
+        int count = to - from;
+        // batch positions sorted by time, ties kept in batch order
+        long firstSecond = Long.MAX_VALUE;
+        for (int k = from; k < to; k++) {
+            firstSecond = Math.min(firstSecond, batch.epochSecond(order[k]));
+        }
+        long[] keys = new long[count];
+        for (int k = from; k < to; k++) {
+            keys[k - from] = (batch.epochSecond(order[k]) - firstSecond) << 32 | order[k];
+        }
+        Arrays.sort(keys);
+        Columns columns;
+        Columns source = current.columns();
+        int existing;
+        if (size == 0 || current.epochSecond(size - 1) <= firstSecond) {
+            columns = source.ensureCapacity(size + count, size);
+            existing = size;
+        } else {
+            columns = new Columns(Math.max(INITIAL_CAPACITY, (size + count) * 2));
+            existing = 0;
+        }
+        int target = existing;
+        for (long key : keys) {
+            int i = (int) key;
+            long epochSecond = batch.epochSecond(i);
+            int at = existing < size ? current.upperBound(epochSecond, existing, size) : size;
+            columns.copy(source, existing, target, at - existing);
+            target += at - existing;
+            existing = at;
+            columns.set(target++, batch.type(i), names[i], units[i], batch.quantity(i), epochSecond,
+                    batch.durationSeconds(i));
+        }
+        columns.copy(source, existing, target, size - existing);
+        double[] runningTotals = current.runningTotals;
+        int settled = current.settled;
+        if (runningTotals != null) {
+            if (slotOf((int) Math.floorMod(firstSecond, SECONDS_PER_DAY)) >= settled) {
+                double[] running = current.totals.clone();
+                for (long key : keys) {
+                    int i = (int) key;
+                    int slot = slotOf((int) Math.floorMod(batch.epochSecond(i), SECONDS_PER_DAY));
+                    settle(runningTotals, settled, slot, running);
+                    settled = slot;
+                    for (int metric = 0; metric < METRICS; metric++) {
+                        running[metric] += contributions[i * METRICS + metric];
+                    }
+                }
+            } else {
+                runningTotals = current.settledCopy();
+                double[] slots = new double[METRICS * SLOTS];
+                for (long key : keys) {
+                    int i = (int) key;
+                    int slot = slotOf((int) Math.floorMod(batch.epochSecond(i), SECONDS_PER_DAY));
+                    settled = Math.max(settled, slot);
+                    for (int metric = 0; metric < METRICS; metric++) {
+                        slots[metric * SLOTS + slot] += contributions[i * METRICS + metric];
+                    }
+                }
+                for (int metric = 0; metric < METRICS; metric++) {
+                    double running = 0;
+                    for (int slot = 0; slot < settled; slot++) {
+                        running += slots[metric * SLOTS + slot];
+                        runningTotals[metric * SLOTS + slot] += running;
+                    }
+                }
+            }
+        }
+        publish(current, columns, size + count, contribution, runningTotals, settled);
+    }
+
+    /**
+     * Settles the running totals through the slots {@code [from, to)} at {@code totals}.
+     */
+    private static void settle(double[] runningTotals, int from, int to, double[] totals) {
+        for (int metric = 0; metric < METRICS; metric++) {
+            for (int slot = from; slot < to; slot++) {
+                runningTotals[metric * SLOTS + slot] = totals[metric];
+            }
+        }
+    }
+
+    private void publish(Segment current, Columns columns, int size, double[] contribution, double[] runningTotals,
+                         int settled) {
+        double[] totals = current.totals.clone();
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] += contribution[i];
+        }
+        segment = new Segment(columns, size, totals, runningTotals, settled);
+    }
+
+    /**
+     * Packs the records into a direct buffer and drops the columns; a no-op when already done.
+     */
+    synchronized void moveOffHeap() {
+        Segment current = segment;
+        if (current.offHeap != null || current.isSummary()) return;
+        int size = current.size;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(size, 1) * OFF_HEAP_ENTRY)
+                .order(ByteOrder.nativeOrder());
+        Columns columns = current.columns;
+        for (int i = 0; i < size; i++) {
+            int at = i * OFF_HEAP_ENTRY;
+            buffer.putLong(at, columns.epochSeconds[i]);
+            buffer.putDouble(at + QUANTITY, columns.quantities[i]);
+            buffer.putInt(at + DURATION, columns.durationSeconds[i]);
+            buffer.putInt(at + UNIT, columns.units[i]);
+            buffer.putInt(at + NAME, columns.names[i]);
+            buffer.put(at + TYPE, columns.types[i]);
+        }
+        segment = new Segment(buffer, size, current.totals);
+    }
+
+    /**
+     * Drops the records and the running totals but keeps the day's totals; records written later are
+     * added to them as usual. The records of the types whose metric total is NaN stay, so reading
+     * that total fails the way it did before.
+     */
+    synchronized void summarize() {
+        Segment current = segment;
+        if (current.summary) return;
+        boolean[] kept = new boolean[MOVE + 1];
+        for (Metric metric : Metric.VALUES) {
+            if (Double.isNaN(current.totals[metric.ordinal()])) kept[metric.type] = true;
+        }
+        int size = 0;
+        for (int i = 0; i < current.size; i++) {
+            if (kept[current.type(i)]) size++;
+        }
+        Columns columns = new Columns(size);
+        for (int i = 0, at = 0; at < size; i++) {
+            if (kept[current.type(i)]) {
+                columns.set(at++, current.type(i), current.name(i), current.unit(i), current.quantity(i),
+                        current.epochSecond(i), current.durationSeconds(i));
+            }
+        }
+        segment = new Segment(columns, size, current.totals, null, 0, true);
+    }
+
+    /**
+     * Adds {@code totals} to the day's totals as the summary of records it no longer has, the way
+     * {@link #summarize()} leaves a day.
+     */
+    synchronized void addSummary(double[] totals) {
+        Segment current = segment;
+        double[] sum = current.totals.clone();
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] += totals[i];
+        }
+        segment = new Segment(current.columns(), current.size, sum, null, 0, true);
+    }
+
+    static final class Segment {
+        private final Columns columns;
+        private final ByteBuffer offHeap;
+        private final int size;
+        private final double[] totals;
+        private final double[] runningTotals;
+        private final int settled; // running totals through the slots before it are final
+        private final boolean summary;
+
+        private Segment(Columns columns, int size, double[] totals, double[] runningTotals, int settled) {
+            this(columns, size, totals, runningTotals, settled, false);
+        }
+
+        private Segment(Columns columns, int size, double[] totals, double[] runningTotals, int settled,
+                        boolean summary) {
+            this.columns = columns;
+            this.offHeap = null;
+            this.size = size;
+            this.totals = totals;
+            this.runningTotals = runningTotals;
+            this.settled = settled;
+            this.summary = summary;
+        }
+
+        private Segment(ByteBuffer offHeap, int size, double[] totals) {
+            this.columns = null;
+            this.offHeap = offHeap;
+            this.size = size;
+            this.totals = totals;
+            this.runningTotals = null;
+            this.settled = 0;
+            this.summary = false;
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isOffHeap() {
+            return offHeap != null;
+        }
+
+        boolean isSummary() {
+            return summary;
+        }
+
+        /**
+         * Bytes held outside of the heap.
+         */
+        long offHeapBytes() {
+            return offHeap == null ? 0 : offHeap.capacity();
+        }
+
+        long epochSecond(int index) {
+            return columns != null ? columns.epochSeconds[index] : offHeap.getLong(index * OFF_HEAP_ENTRY);
+        }
+
+        double quantity(int index) {
+            return columns != null ? columns.quantities[index]
+                    : offHeap.getDouble(index * OFF_HEAP_ENTRY + QUANTITY);
+        }
+
+        int durationSeconds(int index) {
+            return columns != null ? columns.durationSeconds[index]
+                    : offHeap.getInt(index * OFF_HEAP_ENTRY + DURATION);
+        }
+
+        byte type(int index) {
+            return columns != null ? columns.types[index] : offHeap.get(index * OFF_HEAP_ENTRY + TYPE);
+        }
+
+        int unit(int index) {
+            return columns != null ? columns.units[index] : offHeap.getInt(index * OFF_HEAP_ENTRY + UNIT);
+        }
+
+        int name(int index) {
+            return columns != null ? columns.names[index] : offHeap.getInt(index * OFF_HEAP_ENTRY + NAME);
+        }
+
+        /**
+         * The columns to write on, unpacked into fresh ones for an off-heap segment.
+         */
+        private Columns columns() {
+            if (columns != null) return columns;
+            Columns unpacked = new Columns(Math.max(INITIAL_CAPACITY, size * 2));
+            for (int i = 0; i < size; i++) {
+                unpacked.set(i, type(i), name(i), unit(i), quantity(i), epochSecond(i), durationSeconds(i));
+            }
+            return unpacked;
+        }
+
+        /**
+         * Index of the first record later than {@code epochSecond}.
+         */
+        int upperBound(long epochSecond) {
+            return upperBound(epochSecond, 0, size);
+        }
+
+        int upperBound(long epochSecond, int from, int to) {
+            if (columns == null) return offHeapUpperBound(epochSecond, from, to);
+            long[] epochSeconds = columns.epochSeconds;
+            while (from < to) {
+                int middle = (from + to) >>> 1;
+                if (epochSeconds[middle] <= epochSecond) {
+                    from = middle + 1;
+                } else {
+                    to = middle;
+                }
+            }
+            return from;
+        }
+
+        private int offHeapUpperBound(long epochSecond, int from, int to) {
+            while (from < to) {
+                int middle = (from + to) >>> 1;
+                if (offHeap.getLong(middle * OFF_HEAP_ENTRY) <= epochSecond) {
+                    from = middle + 1;
+                } else {
+                    to = middle;
+                }
+            }
+            return from;
+        }
+
+        /**
+         * Running total of a metric over the whole day, NaN once a record could not be converted into it.
+         */
+        double total(Metric metric) {
+            return totals[metric.ordinal()];
+        }
+
+        /**
+         * Whether {@link #slotsTotal} can answer, which it cannot after the day was moved off-heap.
+         */
+        boolean hasSlots() {
+            return runningTotals != null;
+        }
+
+        /**
+         * Total of a metric over the slots {@code [0, slots)}, NaN once a record in them could not be
+         * converted into it.
+         */
+        double slotsTotal(Metric metric, int slots) {
+            if (slots == 0) return 0;
+            return slots - 1 < settled ? runningTotals[metric.ordinal() * SLOTS + slots - 1] : totals[metric.ordinal()];
+        }
+
+        /**
+         * Fresh running totals for a write into a settled slot, every slot filled in.
+         */
+        private double[] settledCopy() {
+            double[] copy = runningTotals.clone();
+            settle(copy, settled, SLOTS, totals);
+            return copy;
+        }
+    }
+
+    private static final class Columns {
+        final long[] epochSeconds;
+        final double[] quantities;
+        final int[] durationSeconds;
+        final byte[] types;
+        final int[] units;
+        final int[] names;
+
+        Columns(int capacity) {
+            epochSeconds = new long[capacity];
+            quantities = new double[capacity];
+            durationSeconds = new int[capacity];
+            types = new byte[capacity];
+            units = new int[capacity];
+            names = new int[capacity];
+        }
+
+        private Columns(Columns source, int capacity) {
+            epochSeconds = Arrays.copyOf(source.epochSeconds, capacity);
+            quantities = Arrays.copyOf(source.quantities, capacity);
+            durationSeconds = Arrays.copyOf(source.durationSeconds, capacity);
+            types = Arrays.copyOf(source.types, capacity);
+            units = Arrays.copyOf(source.units, capacity);
+            names = Arrays.copyOf(source.names, capacity);
+        }
+
+        Columns ensureCapacity(int required, int size) {
+            if (required <= types.length) return this;
+            return new Columns(this, Math.max(required, Math.max(INITIAL_CAPACITY, size * 2)));
+        }
+
+        void copy(Columns source, int from, int to, int length) {
+            if (source == this && from == to) return;
+            System.arraycopy(source.epochSeconds, from, epochSeconds, to, length);
+            System.arraycopy(source.quantities, from, quantities, to, length);
+            System.arraycopy(source.durationSeconds, from, durationSeconds, to, length);
+            System.arraycopy(source.types, from, types, to, length);
+            System.arraycopy(source.units, from, units, to, length);
+            System.arraycopy(source.names, from, names, to, length);
+        }
+
+        void set(int index, byte type, int name, int unit, double quantity, long epochSecond, int durationSecond) {
+            epochSeconds[index] = epochSecond;
+            quantities[index] = quantity;
+            durationSeconds[index] = durationSecond;
+            types[index] = type;
+            units[index] = unit;
+            names[index] = name;
+        }
+    }
+}
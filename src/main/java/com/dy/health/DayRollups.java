@@ -0,0 +1,119 @@
+package com.dy.health;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Daily metric totals of every recorded day in one primitive array indexed by epoch day, so period
+ * reports walk a contiguous block of memory instead of looking days up and rescanning their records.
+ * Writers add the contribution of each record (or batch group) to its day, which keeps late records
+ * for past days accounted for without invalidation. Readers copy a block of days under an optimistic
+ * read and only fall back to locking when a writer interfered.
+ * <p>
+ * Days {@link #dropBefore dropped} read as zero and ignore writes; the array moves their room over to
+ * new days instead of growing, so a bounded span of retained days takes bounded memory.
+ */
+final class DayRollups {
+    static final int METRICS = Metric.VALUES.length;
+
+    private static final int INITIAL_DAYS = 64;
+
+    private final StampedLock lock = new StampedLock();
+    private double[] totals = new double[0];
+    private long firstDay;
+    private long retainedFrom = Long.MIN_VALUE;
+
+    void add(long epochDay, double[] contribution) {
+        long stamp = lock.writeLock();
+        try {
+            if (epochDay < retainedFrom) return;
+            int offset = offsetOf(epochDay);
+            for (int metric = 0; metric < METRICS; metric++) {
+                totals[offset + metric] += contribution[metric];
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Position of the day's first metric, growing the array to cover the day when needed.
+     */
+    private int offsetOf(long epochDay) {
+        int days = totals.length / METRICS;
+        if (days == 0) {
+            totals = new double[INITIAL_DAYS * METRICS];
+            firstDay = epochDay - INITIAL_DAYS / 2;
+        } else if (epochDay < firstDay || epochDay >= firstDay + days) {
+            long newFirst = Math.min(Math.max(firstDay, retainedFrom), epochDay);
+            long newEnd = Math.max(firstDay + days, epochDay + 1);
+            long newDays = newEnd - newFirst <= days ? days : Math.max(days * 2L, newEnd - newFirst);
+            if (epochDay < firstDay) {
+                newFirst = newEnd - newDays; // leave the headroom on the side that grew
+            }
+            if (newDays * METRICS > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Records span too many days: " + newDays);
+            }
+            double[] grown = new double[(int) newDays * METRICS];
+            long from = Math.max(firstDay, newFirst);
+            long to = Math.min(firstDay + days, newFirst + newDays);
+            if (from < to) {
+                System.arraycopy(totals, (int) (from - firstDay) * METRICS, grown, (int) (from - newFirst) * METRICS,
+                        (int) (to - from) * METRICS);
+            }
+            totals = grown;
+            firstDay = newFirst;
+        }
+        return (int) (epochDay - firstDay) * METRICS;
+    }
+
+    /**
+     * Zeroes the days before {@code epochDay} and has them ignore writes from now on.
+     */
+    void dropBefore(long epochDay) {
+        long stamp = lock.writeLock();
+        try {
+            if (epochDay <= retainedFrom) return;
+            long from = Math.max(firstDay, retainedFrom);
+            long to = Math.min(epochDay, firstDay + totals.length / METRICS);
+            if (from < to) {
+                Arrays.fill(totals, (int) (from - firstDay) * METRICS, (int) (to - firstDay) * METRICS, 0);
+            }
+            retainedFrom = epochDay;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Copies the totals of {@code dayCount} days starting at {@code startDay} into {@code target}, day
+     * after day with {@link #METRICS} values each. Days never recorded read as zero.
+     */
+    void read(long startDay, int dayCount, double[] target) {
+        long stamp = lock.tryOptimisticRead();
+        copy(startDay, dayCount, target);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                copy(startDay, dayCount, target);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    private void copy(long startDay, int dayCount, double[] target) {
+        double[] totals = this.totals;
+        long firstDay = this.firstDay;
+        long from = Math.max(startDay, firstDay);
+        long to = Math.min(startDay + dayCount, firstDay + totals.length / METRICS);
+        if (from >= to) {
+            Arrays.fill(target, 0, dayCount * METRICS, 0);
+            return;
+        }
+        Arrays.fill(target, 0, (int) (from - startDay) * METRICS, 0);
+        System.arraycopy(totals, (int) (from - firstDay) * METRICS, target, (int) (from - startDay) * METRICS,
+                (int) (to - from) * METRICS);
+        Arrays.fill(target, (int) (to - startDay) * METRICS, dayCount * METRICS, 0);
+    }
+}
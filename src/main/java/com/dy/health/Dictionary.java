@@ -0,0 +1,53 @@
+package com.dy.health;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+final class Dictionary {
+    static final int ABSENT = -1;
+
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[16];
+    private int size;
+
+    int intern(String value) {
+        if (value == null) return ABSENT;
+        Integer code = codes.get(value);
+        return code != null ? code : add(value);
+    }
+
+    private synchronized int add(String value) {
+        Integer code = codes.get(value);
+        if (code != null) return code;
+        String[] current = values;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = value;
+        values = current;
+        codes.put(value, size);
+        return size++;
+    }
+
+    /**
+     * Makes {@code alias} intern to an existing code, which keeps decoding to its original value.
+     */
+    synchronized void alias(String alias, int code) {
+        codes.putIfAbsent(alias, code);
+    }
+
+    int codeOf(String value) {
+        if (value == null) return ABSENT;
+        Integer code = codes.get(value);
+        return code == null ? ABSENT : code;
+    }
+
+    String valueOf(int code) {
+        return code == ABSENT ? null : values[code];
+    }
+
+    synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,128 @@
+package com.dy.health;
+
+import java.util.Arrays;
+
+/**
+ * Collects values into a primitive buffer and selects the median with quickselect, without a full sort.
+ */
+final class ExactMedian implements MedianAccumulator {
+    private double[] values;
+    private int size;
+    private int partitioned; // none of the values before it is greater than any from it on
+
+    ExactMedian(int expectedSize) {
+        values = new double[Math.max(expectedSize, 1)];
+    }
+
+    @Override
+    public void add(double value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+        partitioned = 0;
+    }
+
+    @Override
+    public double median() {
+        partitioned = 0; // selecting the median reorders the values behind the last quantile
+        return median(values, size);
+    }
+
+    /**
+     * Reorders the values in place. Asked for in ascending order, each quantile only selects among
+     * the values from the previous one on.
+     */
+    @Override
+    public double quantile(double quantile) {
+        if (size == 0) return 0;
+        double position = quantile * (size - 1);
+        int lower = (int) position;
+        double low = select(values, lower >= partitioned ? partitioned : 0, size - 1, lower);
+        partitioned = lower;
+        if (lower == position) {
+            return low;
+        }
+        // after selection everything right of it is not less than it
+        double high = values[lower + 1];
+        for (int i = lower + 2; i < size; i++) {
+            if (values[i] < high) high = values[i];
+        }
+        return low + (position - lower) * (high - low);
+    }
+
+    @Override
+    public void merge(MedianAccumulator accumulator) {
+        ExactMedian other = (ExactMedian) accumulator;
+        if (size + other.size > values.length) {
+            values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+        }
+        System.arraycopy(other.values, 0, values, size, other.size);
+        size += other.size;
+        partitioned = 0;
+    }
+
+    /**
+     * Reorders the first {@code size} values in place.
+     */
+    static double median(double[] values, int size) {
+        if (size == 0) return 0;
+        if (size == 1) return values[0];
+        int middle = size / 2;
+        double upper = select(values, 0, size - 1, middle);
+        if (size % 2 == 1) {
+            return upper;
+        }
+        // after selection everything left of the middle is not greater than it
+        double lower = values[0];
+        for (int i = 1; i < middle; i++) {
+            if (values[i] > lower) lower = values[i];
+        }
+        return (upper + lower) / 2.0;
+    }
+
+    static double select(double[] values, int from, int to, int k) {
+        while (from < to) {
+            double pivot = values[medianOfThree(values, from, to)];
+            // three-way partition keeps long runs of equal values (e.g. idle days) linear
+            int less = from;
+            int greater = to;
+            int i = from;
+            while (i <= greater) {
+                if (values[i] < pivot) {
+                    swap(values, less++, i++);
+                } else if (values[i] > pivot) {
+                    swap(values, i, greater--);
+                } else {
+                    i++;
+                }
+            }
+            if (k < less) {
+                to = less - 1;
+            } else if (k > greater) {
+                from = greater + 1;
+            } else {
+                return pivot;
+            }
+        }
+        return values[k];
+    }
+
+    private static int medianOfThree(double[] values, int from, int to) {
+        int middle = (from + to) >>> 1;
+        double a = values[from];
+        double b = values[middle];
+        double c = values[to];
+        if (a < b) {
+            return b < c ? middle : (a < c ? to : from);
+        } else {
+            return a < c ? from : (b < c ? to : middle);
+        }
+    }
+
+    private static void swap(double[] values, int i, int j) {
+        double value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+}
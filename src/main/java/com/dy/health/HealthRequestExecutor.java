@@ -0,0 +1,182 @@
+package com.dy.health;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Request front end for many users' {@link HealthService}s that runs every call as a task of its own:
+ * on a virtual thread per task on JDKs that have them, on one platform thread per core otherwise.
+ * A user has at most {@code maxConcurrentPerUser} calls running at a time; the rest wait in the user's
+ * own queue without holding a thread, so a user syncing a backlog cannot take the cores from everyone
+ * else. With one call per user, the default, a user's calls also run in submission order.
+ */
+public class HealthRequestExecutor implements AutoCloseable {
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+    private final Map<HealthServiceSetup, HealthServiceSetup> setups = new ConcurrentHashMap<>();
+    private final int maxConcurrentPerUser;
+    private final ExecutorService executor;
+
+    public HealthRequestExecutor() {
+        this(1);
+    }
+
+    public HealthRequestExecutor(int maxConcurrentPerUser) {
+        this(maxConcurrentPerUser, newThreadPerTaskExecutor());
+    }
+
+    /**
+     * Runs the calls on {@code executor}, which {@link #close()} shuts down.
+     */
+    public HealthRequestExecutor(int maxConcurrentPerUser, ExecutorService executor) {
+        if (maxConcurrentPerUser < 1) {
+            throw new IllegalArgumentException("At least one call per user is required: " + maxConcurrentPerUser);
+        }
+        this.maxConcurrentPerUser = maxConcurrentPerUser;
+        this.executor = executor;
+    }
+
+    /**
+     * A virtual thread per task, or a pool of daemon threads, one per core, before JDK 21.
+     */
+    static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            // looked up rather than called, so the front end still runs on JDKs without virtual threads
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "health-request");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public void register(String userId, HealthServiceSetup setup) {
+        HealthServiceSetup shared = setups.computeIfAbsent(new HealthServiceSetup(setup), key -> key);
+        users.computeIfAbsent(userId, key -> new User(HealthService.sharing(shared)));
+    }
+
+    public CompletableFuture<Void> execute(String userId, Consumer<HealthService> action) {
+        return submit(userId, service -> {
+            action.accept(service);
+            return null;
+        });
+    }
+
+    public <T> CompletableFuture<T> submit(String userId, Function<HealthService, T> action) {
+        User user = users.get(userId);
+        if (user == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Unknown user: " + userId));
+        }
+        Call<T> call = new Call<>(user.service, action);
+        user.run(call);
+        return call.result;
+    }
+
+    public CompletableFuture<Void> drink(String userId, String drinkName, String measureUnit, double quantity,
+                                         LocalDateTime dateTime) {
+        return execute(userId, service -> service.drink(drinkName, measureUnit, quantity, dateTime));
+    }
+
+    public CompletableFuture<Void> eat(String userId, String foodName, String measureUnit, double quantity,
+                                       LocalDateTime dateTime) {
+        return execute(userId, service -> service.eat(foodName, measureUnit, quantity, dateTime));
+    }
+
+    public CompletableFuture<Void> move(String userId, String measureUnit, double quantity, LocalDateTime moveStart,
+                                        LocalDateTime moveEnd) {
+        return execute(userId, service -> service.move(measureUnit, quantity, moveStart, moveEnd));
+    }
+
+    public CompletableFuture<DayReport> getDayReport(String userId, LocalDate date) {
+        return submit(userId, service -> service.getDayReport(date));
+    }
+
+    public CompletableFuture<PeriodReport> getPeriodReport(String userId, LocalDate startDate, LocalDate endDate) {
+        return submit(userId, service -> service.getPeriodReport(startDate, endDate));
+    }
+
+    /**
+     * Shuts the executor down: calls already running finish, calls still waiting fail with a
+     * {@link RejectedExecutionException}.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private static final class Call<T> implements Runnable {
+        private final HealthService service;
+        private final Function<HealthService, T> action;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Call(HealthService service, Function<HealthService, T> action) {
+            this.service = service;
+            this.action = action;
+        }
+
+        @Override
+        public void run() {
+            try {
+                result.complete(action.apply(service));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private final class User {
+        private final HealthService service;
+        private final Queue<Call<?>> waiting = new ArrayDeque<>();
+        private int running;
+
+        User(HealthService service) {
+            this.service = service;
+        }
+
+        void run(Call<?> call) {
+            synchronized (this) {
+                if (running == maxConcurrentPerUser) {
+                    waiting.add(call);
+                    return;
+                }
+                running++;
+            }
+            dispatch(call);
+        }
+
+        /**
+         * Hands {@code call} to the executor, which picks up the next waiting call once it is done.
+         */
+        private void dispatch(Call<?> call) {
+            while (call != null) {
+                Call<?> dispatched = call;
+                try {
+                    executor.execute(() -> {
+                        dispatched.run();
+                        dispatch(next());
+                    });
+                    return;
+                } catch (RejectedExecutionException e) {
+                    dispatched.result.completeExceptionally(e);
+                    call = next();
+                }
+            }
+        }
+
+        /**
+         * The waiting call that takes over a finished call's place, or null when none is waiting.
+         */
+        private synchronized Call<?> next() {
+            Call<?> next = waiting.poll();
+            if (next == null) running--;
+            return next;
+        }
+    }
+}
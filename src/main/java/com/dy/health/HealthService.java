@@ -1,172 +1,400 @@
 package com.dy.health;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
+import java.time.ZoneOffset;
 import java.util.*;
-import java.util.function.BinaryOperator;
-import java.util.function.Function;
-import java.util.function.Predicate;
-import java.util.stream.Stream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongBinaryOperator;
+import java.util.function.ToLongFunction;
 
+/**
+ * Safe for concurrent use. Writers only contend when they record into the same day, and readers
+ * work on per-day snapshots without blocking writers.
+ */
 public class HealthService {
 
-    private static final String LITER = "liter";
-    private static final String GLASS = "glass";
     private static final String MOVE = "move";
-    private static final String HOUR = "hour";
-    private static final String STEP = "step";
     private static final String ALL = "all";
-    private static final String KILO_CALORIE = "kilocal";
     private static final String DRINK = "drink";
     private static final String FOOD = "food";
-    private final Map<LocalDate, List<Record>> records = new HashMap<>();
-    private final Map<String, TimeRange> namedTimeRanges;
+    private static final String[] TYPE_NAMES = {DRINK, FOOD, MOVE};
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+    private static final int IMPORT_BATCH_SIZE = 1 << 14;
+    private static final int PERIOD_CHUNK_DAYS = 64;
+    private final Map<LocalDate, DayRecords> records = new ConcurrentHashMap<>();
+    private final DayRollups rollups = new DayRollups();
+    private final Dictionary units = Unit.newDictionary();
+    private final Dictionary names = new Dictionary();
+    private final HealthServiceSetup setup;
+    private final CompiledTimeRanges timeRanges;
+    private final int allRange;
+    private final boolean slotsAnswer; // whether the intraday sums count every record, like an unbound "all" does
     private final double minStepsPerDay;
     private final double minHoursOfMovementPerDay;
     private final double minKilocalsPerDay;
     private final double minLitersPerDay;
+    private final double[] norms = new double[Metric.VALUES.length];
+    private final RecordJournal journal;
+    private final int offHeapAfterDays;
+    private final Object tiering = new Object();
+    private volatile long newestDay = Long.MIN_VALUE;
+    private volatile long tieredBefore = Long.MIN_VALUE; // every day before it is off-heap
+    private final int rawRecordDays;
+    private final int retentionDays;
+    private final AtomicLong retainedNewestDay = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private volatile CompletableFuture<Void> eviction = CompletableFuture.completedFuture(null);
+    private volatile long summarizedBefore = Long.MIN_VALUE; // every day before it is summarized
+    private volatile long droppedBefore = Long.MIN_VALUE; // every day before it is dropped
+    private final ReportCache reportCache;
+    private final Instrumentation instrumentation;
+    private final DayProgressPublisher progress = new DayProgressPublisher(this::progressOf);
+    private final List<RollingPeriodReport> rollingReports = new CopyOnWriteArrayList<>();
 
     public HealthService(HealthServiceSetup setup) {
-        this.namedTimeRanges = setup.getNamedTimeRanges();
+        this(setup, null);
+    }
+
+    /**
+     * Restores everything the journal holds and appends every new record to it from now on.
+     */
+    public HealthService(HealthServiceSetup setup, RecordJournal journal) {
+        this(setup, true, journal);
+    }
+
+    /**
+     * A service that keeps {@code setup} itself rather than a copy, so that services of users registered
+     * with equal setups share one; nothing may change it afterwards.
+     */
+    static HealthService sharing(HealthServiceSetup setup) {
+        return new HealthService(setup, false, null);
+    }
+
+    private HealthService(HealthServiceSetup setup, boolean copy, RecordJournal journal) {
+        this.setup = copy ? new HealthServiceSetup(setup) : setup;
+        this.timeRanges = new CompiledTimeRanges(setup.getNamedTimeRanges());
+        this.allRange = timeRanges.idOf(ALL);
+        this.slotsAnswer = allRange != CompiledTimeRanges.UNKNOWN && timeRanges.isUnbound(allRange);
         this.minStepsPerDay = setup.getMinStepsPerDay();
         this.minHoursOfMovementPerDay = setup.getMinHoursOfMovementPerDay();
         this.minKilocalsPerDay = setup.getMinKilocalsPerDay();
         this.minLitersPerDay = setup.getMinLitersPerDay();
+        norms[Metric.STEPS.ordinal()] = minStepsPerDay;
+        norms[Metric.HOURS.ordinal()] = minHoursOfMovementPerDay;
+        norms[Metric.KILOCALS.ordinal()] = minKilocalsPerDay;
+        norms[Metric.LITERS.ordinal()] = minLitersPerDay;
+        this.offHeapAfterDays = setup.getOffHeapAfterDays();
+        this.rawRecordDays = setup.getRawRecordDays();
+        this.retentionDays = setup.getRetentionDays();
+        this.reportCache = new ReportCache(setup.getReportCacheDays());
+        this.instrumentation = Instrumentation.create(setup.isInstrumented());
+        instrumentation.gauge("days", records::size);
+        instrumentation.gauge("records", () -> dayStatistic(DayRecords.Segment::size, Long::sum));
+        instrumentation.gauge("maxRecordsPerDay", () -> dayStatistic(DayRecords.Segment::size, Math::max));
+        instrumentation.gauge("offHeapBytes", () -> dayStatistic(DayRecords.Segment::offHeapBytes, Long::sum));
+        instrumentation.gauge("reportCacheHits", () -> reportCache.statistics().getHitCount());
+        instrumentation.gauge("reportCacheMisses", () -> reportCache.statistics().getMissCount());
+        if (journal != null) {
+            try {
+                apply(journal.replay());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        this.journal = journal;
     }
 
-    private static class Record {
-        final String type; // drink
-        final String name;
-        final String measureUnit;
-        final double quantity;
-        final LocalDateTime dateTime; // should it just be LocalTime?
-        final Duration duration;
+    private double calculate(byte type, String measureUnit, String timeRange, LocalDate date) {
+        DayRecords.Segment day = snapshot(date);
+        return day == null ? 0 : calculate(day, type, measureUnit, timeRange, date);
+    }
+
+    private double calculate(DayRecords.Segment day, byte type, String measureUnit, String timeRange,
+                             LocalDate date) {
+        long start = instrumentation.start();
+        double sum = sum(day, type, measureUnit, timeRanges.idOf(timeRange), date);
+        instrumentation.stop(Instrumentation.Operation.CALCULATE, start);
+        return sum;
+    }
 
-        public Record(String type, String name, String measureUnit,
-                      double quantity, LocalDateTime dateTime,
-                      Duration duration) {
-            this.type = type;
-            this.name = name;
-            this.measureUnit = measureUnit;
-            this.quantity = quantity;
-            this.dateTime = dateTime;
-            this.duration = duration;
+    private double sum(DayRecords.Segment day, byte type, String measureUnit, int range, LocalDate date) {
+        if (range == CompiledTimeRanges.UNKNOWN) return 0;
+        return timeRanges.isUnbound(range)
+                ? sum(day, type, measureUnit, -1, (int) SECONDS_PER_DAY, date)
+                : sum(day, type, measureUnit, timeRanges.start(range), timeRanges.end(range), date);
+    }
+
+    /**
+     * Amount of {@code type} recorded later than {@code after} and up to {@code upTo} seconds into the
+     * day. Whole slots are read off the day's intraday sums; only the records in the partial slots at
+     * either end are looked at.
+     */
+    private double sum(DayRecords.Segment day, byte type, String measureUnit, int after, int upTo, LocalDate date) {
+        if (after >= upTo) return 0;
+        int unit = units.codeOf(measureUnit);
+        Metric metric = slotsAnswer && day.hasSlots() ? metricOf(type, unit) : null;
+        int first = DayRecords.slotOf(after) + 1;
+        int last = Math.floorDiv(upTo, DayRecords.SLOT_SECONDS);
+        if (metric != null && first <= last) {
+            double sum = (day.slotsTotal(metric, last + 1) - day.slotsTotal(metric, first))
+                    * Unit.factor(metric.unit.ordinal(), unit);
+            if (!Double.isNaN(sum)) {
+                return sum + scan(day, type, unit, measureUnit, after, (first - 1) * DayRecords.SLOT_SECONDS, date)
+                        + scan(day, type, unit, measureUnit, last * DayRecords.SLOT_SECONDS, upTo, date);
+            }
         }
+        return scan(day, type, unit, measureUnit, after, upTo, date);
+    }
 
-        public Record(String type, String name, String measureUnit,
-                      double quantity, LocalDateTime dateTime) {
-            this(type, name, measureUnit, quantity, dateTime, Duration.ZERO);
+    /**
+     * The metric of {@code type} that converts into {@code unit}, if any.
+     */
+    private static Metric metricOf(byte type, int unit) {
+        for (Metric metric : Metric.VALUES) {
+            if (metric.type == type && !Double.isNaN(Unit.factor(metric.unit.ordinal(), unit))) return metric;
         }
+        return null;
+    }
 
-        @Override
-        public String toString() {
-            return "Record{" +
-                    "type='" + type + '\'' +
-                    ", name='" + name + '\'' +
-                    ", measureUnit='" + measureUnit + '\'' +
-                    ", quantity=" + quantity +
-                    ", dateTime=" + dateTime +
-                    '}';
+    private double scan(DayRecords.Segment day, byte type, int unit, String measureUnit, int after, int upTo,
+                        LocalDate date) {
+        if (after >= upTo) return 0;
+        long startOfDay = date.toEpochDay() * SECONDS_PER_DAY;
+        double sum = 0;
+        // records are ordered by time, so only the range's own slice needs to be looked at
+        for (int i = day.upperBound(startOfDay + after), to = day.upperBound(startOfDay + upTo); i < to; i++) {
+            if (day.type(i) != type) continue;
+            double quantity = convert(type, day.unit(i), day.quantity(i), day.durationSeconds(i), unit);
+            if (Double.isNaN(quantity)) {
+                throw new IllegalStateException("Unable to transform " + describe(day, i) +
+                        " into " + measureUnit); // to be implemented once feature is requested
+            }
+            sum += quantity;
         }
+        return sum;
     }
 
-    private double calculate(String type, String measureUnit, String timeRange, LocalDate date) {
-        Stream<Record> recordsForDate = records.get(date).stream();
-        return recordsForDate
-                .filter(isOf(type))
-                .map(toQuantity(measureUnit, timeRange))
-                .reduce(toSum())
-                .orElse(0D);
+    /**
+     * Folds the record counts of all days, for the gauges.
+     */
+    private long dayStatistic(ToLongFunction<DayRecords.Segment> value, LongBinaryOperator statistic) {
+        long result = 0;
+        for (DayRecords day : records.values()) {
+            result = statistic.applyAsLong(result, value.applyAsLong(day.segment()));
+        }
+        return result;
     }
 
-    private BinaryOperator<Double> toSum() {
-        return (a, b) -> a + b;
+    public HealthServiceSetup getSetup() {
+        return new HealthServiceSetup(setup);
     }
 
-    private Function<Record, Double> toQuantity(String measureUnit, String timeRange) {
-        return record -> {
-            if (record.measureUnit.equals(measureUnit)) {
-                if (isWithinTimeRange(timeRange, record.dateTime.toLocalTime())) {
-                    return record.quantity;
-                } else {
-                    return 0D;
-                }
-            } else {
-                return getTransformedQuantity(record, measureUnit);
-            }
-        };
+    public Instrumentation getInstrumentation() {
+        return instrumentation;
     }
 
-    private Predicate<Record> isOf(String type) {
-        return record -> record.type.equals(type);
+    private DayRecords.Segment snapshot(LocalDate date) {
+        DayRecords day = records.get(date);
+        return day == null ? null : day.segment();
     }
 
-    private double getTransformedQuantity(Record record, String targetMeasureUnit) {
-        if (LITER.equals(targetMeasureUnit) && GLASS.equals(record.measureUnit)) {
-            return record.quantity * 0.25;
-        } else if (HOUR.equals(targetMeasureUnit) && MOVE.equals(record.type)) {
-            return record.duration.toMinutes() / 60.0;
-        } else {
-            throw new IllegalStateException("Unable to transform " + record +
-                    " into " + targetMeasureUnit); // to be implemented once feature is requested
-        }
+    private double total(Metric metric, LocalDate date) {
+        DayRecords.Segment day = snapshot(date);
+        return day == null ? 0 : total(day, metric, date);
     }
 
-    private boolean isWithinTimeRange(String timeRangeName, LocalTime time) {
-        TimeRange timeRange = namedTimeRanges.get(timeRangeName);
-        return timeRange != null && timeRange.isWithinTimeRange(time);
+    private double total(DayRecords.Segment day, Metric metric, LocalDate date) {
+        double total = day.total(metric);
+        return Double.isNaN(total) ? calculate(day, metric.type, metric.unit.symbol, ALL, date) : total;
+    }
 
+    private double quantityOf(byte type, int recordUnit, double quantity, int secondOfDay, int durationSeconds,
+                              int unit, int range) {
+        return timeRanges.contains(range, secondOfDay) ? convert(type, recordUnit, quantity, durationSeconds, unit) : 0;
     }
 
-    private double median(List<Double> list) {
-        int size = list.size();
-        if (size == 0) return 0;
-        if (size == 1) return list.get(0);
-        list.sort(Comparator.naturalOrder());
-        if (size % 2 == 1) {
-            return list.get(size / 2);
+    private static double convert(byte type, int recordUnit, double quantity, int durationSeconds, int unit) {
+        if (recordUnit == unit) {
+            return quantity;
+        } else if (type == DayRecords.MOVE && Unit.isTime(unit) && !Unit.isTime(recordUnit)) {
+            // a move counted in anything but time still lasted for its duration
+            return durationSeconds / 60 / 60.0 * Unit.factor(Unit.HOUR.ordinal(), unit);
+        } else if (type == DayRecords.MOVE && unit == Unit.STEP.ordinal() && Unit.isKnown(recordUnit)
+                && Double.isNaN(Unit.factor(recordUnit, unit))) {
+            return 0; // a distance or a duration does not tell how many steps it took
         } else {
-            return (list.get(size / 2) + list.get(size / 2 - 1)) / 2.0;
+            return quantity * Unit.factor(recordUnit, unit);
         }
     }
 
+    /**
+     * The day's running total of {@code metric} in {@code measureUnit}, or NaN when the unit does not
+     * convert from the metric's own unit.
+     */
+    private double total(Metric metric, String measureUnit, LocalDate date) {
+        double factor = Unit.factor(metric.unit.ordinal(), units.codeOf(measureUnit));
+        return Double.isNaN(factor) ? Double.NaN : total(metric, date) * factor;
+    }
+
+    private String describe(DayRecords.Segment day, int index) {
+        return "Record{" +
+                "type='" + TYPE_NAMES[day.type(index)] + '\'' +
+                ", name='" + names.valueOf(day.name(index)) + '\'' +
+                ", measureUnit='" + units.valueOf(day.unit(index)) + '\'' +
+                ", quantity=" + day.quantity(index) +
+                ", dateTime=" + LocalDateTime.ofEpochSecond(day.epochSecond(index), 0, ZoneOffset.UTC) +
+                '}';
+    }
+
     public PeriodReport getPeriodReport(LocalDate startDate, LocalDate endDate) {
-        List<Double> steps = new ArrayList<>();
-        List<Double> hours = new ArrayList<>();
-        List<Double> kiloCals = new ArrayList<>();
-        List<Double> liters = new ArrayList<>();
-        LocalDate cursor = startDate;
-        // Inject
-        while (cursor.isBefore(endDate) || cursor.isEqual(endDate)) {
-            List<Record> list = records.get(cursor);
-            if (list == null) {
-                steps.add(0D);
-                hours.add(0D);
-                kiloCals.add(0D);
-                liters.add(0D);
-            } else {
-                steps.add(moved(STEP, cursor));
-                hours.add(moved(HOUR, cursor));
-                kiloCals.add(eaten(ALL, KILO_CALORIE, cursor));
-                liters.add(drunk(LITER, cursor));
+        return getPeriodReport(startDate, endDate, MedianMode.exact());
+    }
+
+    public PeriodReport getPeriodReport(LocalDate startDate, LocalDate endDate, MedianMode medianMode) {
+        long start = instrumentation.start();
+        long startDay = startDate.toEpochDay();
+        long endDay = endDate.toEpochDay();
+        int days = (int) Math.max(0, endDay - startDay + 1);
+        PeriodReport report = reportCache.get(
+                new ReportCache.Key(ReportCache.PERIOD, startDay, endDay, medianMode.getRelativeError()),
+                () -> accumulate(startDay, days, medianMode).report(startDate, endDate));
+        instrumentation.stop(Instrumentation.Operation.PERIOD_REPORT, start);
+        return report;
+    }
+
+    /**
+     * A report whose metrics' statistics are each computed when first read, from the records as they
+     * are then, and kept from there on. Cheaper than {@link #getPeriodReport} for callers that read
+     * only some metrics; for all four, {@code getPeriodReport} shares a single pass between them.
+     */
+    public PeriodReport lazyPeriodReport(LocalDate startDate, LocalDate endDate) {
+        return lazyPeriodReport(startDate, endDate, MedianMode.exact());
+    }
+
+    public PeriodReport lazyPeriodReport(LocalDate startDate, LocalDate endDate, MedianMode medianMode) {
+        long startDay = startDate.toEpochDay();
+        long endDay = endDate.toEpochDay();
+        int days = (int) Math.max(0, endDay - startDay + 1);
+        return reportCache.get(
+                new ReportCache.Key(ReportCache.LAZY_PERIOD, startDay, endDay, medianMode.getRelativeError()),
+                () -> new PeriodReport(startDate, endDate, null,
+                        metric -> statistics(metric, startDay, days, medianMode)));
+    }
+
+    private MetricStatistics statistics(Metric metric, long startDay, int days, MedianMode medianMode) {
+        long start = instrumentation.start();
+        MetricAccumulator accumulator = new MetricAccumulator(medianMode, days, norm(metric));
+        double[] chunk = new double[Math.min(days, PERIOD_CHUNK_DAYS) * DayRollups.METRICS];
+        for (int done = 0; done < days; ) {
+            int count = Math.min(days - done, PERIOD_CHUNK_DAYS);
+            readTotals(startDay + done, count, chunk);
+            for (int day = 0; day < count; day++, done++) {
+                accumulator.add(chunk[day * DayRollups.METRICS + metric.ordinal()]);
+            }
+        }
+        MetricStatistics statistics = accumulator.statistics();
+        instrumentation.stop(Instrumentation.Operation.PERIOD_METRIC, start);
+        return statistics;
+    }
+
+    /**
+     * The daily minimum of {@code metric}.
+     */
+    double norm(Metric metric) {
+        return norms[metric.ordinal()];
+    }
+
+    /**
+     * Feeds the totals of {@code days} days from {@code startDay} on into new period statistics, all
+     * four metrics in the same pass over each day.
+     */
+    PeriodAccumulator accumulate(long startDay, int days, MedianMode medianMode) {
+        PeriodAccumulator period = new PeriodAccumulator(medianMode, days, norms);
+        double[] chunk = new double[Math.min(days, PERIOD_CHUNK_DAYS) * DayRollups.METRICS];
+        for (int done = 0; done < days; ) {
+            int count = Math.min(days - done, PERIOD_CHUNK_DAYS);
+            readTotals(startDay + done, count, chunk);
+            for (int day = 0; day < count; day++, done++) {
+                period.add(chunk, day * DayRollups.METRICS);
+            }
+        }
+        return period;
+    }
+
+    /**
+     * Copies the metric totals of {@code dayCount} days from {@code startDay} on into {@code target},
+     * laid out like {@link DayRollups}.
+     */
+    void readTotals(long startDay, int dayCount, double[] target) {
+        rollups.read(startDay, dayCount, target);
+        for (int day = 0; day < dayCount; day++) {
+            int offset = day * DayRollups.METRICS;
+            if (isUnconvertible(target, offset)) {
+                fallBackToRecords(target, offset, LocalDate.ofEpochDay(startDay + day));
             }
-            cursor = cursor.plusDays(1);
         }
-        // Create report
-        return new PeriodReport.PeriodReportBuilder()
-                .setStartDate(startDate)
-                .setEndDate(endDate)
-                .setStepsMedian(median(steps))
-                .setHoursToMoveMedian(median(hours))
-                .setKilocalsMedian(median(kiloCals))
-                .setLiquidLitersMedian(median(liters))
-                .build();
+    }
+
+    /**
+     * A report over the {@code days} days up to {@code endDate} that follows every record and slides
+     * forward by day without being recomputed; {@link RollingPeriodReport#close()} it when done.
+     */
+    public RollingPeriodReport rollingPeriodReport(LocalDate endDate, int days) {
+        RollingPeriodReport report = new RollingPeriodReport(this, endDate, days);
+        rollingReports.add(report);
+        report.refresh();
+        return report;
+    }
+
+    void stopRolling(RollingPeriodReport report) {
+        rollingReports.remove(report);
+    }
+
+    private static boolean isUnconvertible(double[] totals, int offset) {
+        for (int metric = 0; metric < DayRollups.METRICS; metric++) {
+            if (Double.isNaN(totals[offset + metric])) return true;
+        }
+        return false;
+    }
+
+    private void fallBackToRecords(double[] totals, int offset, LocalDate date) {
+        DayRecords.Segment day = snapshot(date);
+        for (Metric metric : Metric.VALUES) {
+            totals[offset + metric.ordinal()] = day == null ? 0 : total(day, metric, date);
+        }
+    }
+
+    /**
+     * Counters of the report cache sized by {@link HealthServiceSetup#setReportCacheDays(int)}.
+     */
+    public ReportCacheStatistics getReportCacheStatistics() {
+        return reportCache.statistics();
     }
 
     public DayReport getDayReport(LocalDate currentDate) {
-        UnfulfilledDayNormReport report = getUnfulfilledDayNormReport(currentDate);
+        long start = instrumentation.start();
+        long day = currentDate.toEpochDay();
+        DayReport dayReport = reportCache.get(new ReportCache.Key(ReportCache.DAY, day, day, 0),
+                () -> dayReport(unfulfilledDayNormReport(currentDate)));
+        instrumentation.stop(Instrumentation.Operation.DAY_REPORT, start);
+        return dayReport;
+    }
+
+    private DayReport dayReport(UnfulfilledDayNormReport report) {
         double stepsCompletionRate = 1.0 - (report.getStepsLeft() / minStepsPerDay);
         double hoursToMoveCompletionRate = 1.0 - (report.getHoursToMoveLeft() / minHoursOfMovementPerDay);
         double kilocalsCompletionRate = 1.0 - (report.getKiloCalsLeft() / minKilocalsPerDay);
@@ -178,11 +406,35 @@ public class HealthService {
     }
 
     public UnfulfilledDayNormReport getUnfulfilledDayNormReport(LocalDate currentDate) {
-        if (!records.containsKey(currentDate)) return new UnfulfilledDayNormReport(); // empty report
-        double liquidLitersLeft = minLitersPerDay - calculate(DRINK, LITER, ALL, currentDate);
-        double kilocalsLeft = minKilocalsPerDay - calculate(FOOD, KILO_CALORIE, ALL, currentDate);
-        double stepsLeft = minStepsPerDay - calculate(MOVE, STEP, ALL, currentDate);
-        double hoursToMoveLeft = minHoursOfMovementPerDay - calculate(MOVE, HOUR, ALL, currentDate);
+        long start = instrumentation.start();
+        UnfulfilledDayNormReport report = unfulfilledDayNormReport(currentDate);
+        instrumentation.stop(Instrumentation.Operation.UNFULFILLED_DAY_NORM_REPORT, start);
+        return report;
+    }
+
+    private UnfulfilledDayNormReport unfulfilledDayNormReport(LocalDate currentDate) {
+        DayRecords.Segment day = snapshot(currentDate);
+        if (day == null) return new UnfulfilledDayNormReport(); // empty report
+        return normsLeft(day, currentDate);
+    }
+
+    /**
+     * What is left of every norm, all of it for a day without records (where the public report is empty).
+     */
+    UnfulfilledDayNormReport normsLeft(LocalDate date) {
+        DayRecords.Segment day = snapshot(date);
+        if (day == null) {
+            return new UnfulfilledDayNormReport(minLitersPerDay, minKilocalsPerDay, minStepsPerDay,
+                    minHoursOfMovementPerDay);
+        }
+        return normsLeft(day, date);
+    }
+
+    private UnfulfilledDayNormReport normsLeft(DayRecords.Segment day, LocalDate currentDate) {
+        double liquidLitersLeft = minLitersPerDay - total(day, Metric.LITERS, currentDate);
+        double kilocalsLeft = minKilocalsPerDay - total(day, Metric.KILOCALS, currentDate);
+        double stepsLeft = minStepsPerDay - total(day, Metric.STEPS, currentDate);
+        double hoursToMoveLeft = minHoursOfMovementPerDay - total(day, Metric.HOURS, currentDate);
         liquidLitersLeft = (liquidLitersLeft < 0) ? 0 : liquidLitersLeft;
         kilocalsLeft = (kilocalsLeft < 0) ? 0 : kilocalsLeft;
         stepsLeft = (stepsLeft < 0) ? 0 : stepsLeft;
@@ -190,38 +442,467 @@ public class HealthService {
         return new UnfulfilledDayNormReport(liquidLitersLeft, kilocalsLeft, stepsLeft, hoursToMoveLeft);
     }
 
-    public void drink(String drinkName, String measureUnit, double quantity, LocalDateTime dateTime) {
+    private DayProgress progressOf(LocalDate date) {
+        UnfulfilledDayNormReport report = unfulfilledDayNormReport(date);
+        return new DayProgress(date, report, dayReport(report));
+    }
+
+    /**
+     * Publishes the day's progress to {@code subscriber} on the common fork-join pool: the current
+     * progress first, then the progress after each change, as far as the subscriber requests items.
+     * Changes made while nothing is requested are coalesced into one item with the latest progress,
+     * and a day never completes.
+     */
+    public void subscribe(LocalDate date, Flow.Subscriber<? super DayProgress> subscriber) {
+        subscribe(date, subscriber, ForkJoinPool.commonPool());
+    }
+
+    public void subscribe(LocalDate date, Flow.Subscriber<? super DayProgress> subscriber, Executor executor) {
+        progress.subscribe(date, subscriber, executor);
+    }
+
+    /**
+     * The day's progress as a publisher, each subscriber {@link #subscribe(LocalDate, Flow.Subscriber)
+     * subscribed} on the common fork-join pool.
+     */
+    public Flow.Publisher<DayProgress> dayProgress(LocalDate date) {
+        return subscriber -> subscribe(date, subscriber);
+    }
+
+    private void record(byte type, String name, String measureUnit, double quantity,
+                        LocalDateTime dateTime, Duration duration) {
         LocalDate date = dateTime.toLocalDate();
-        records.putIfAbsent(date, new ArrayList<>());
-        records.get(date).add(new Record(DRINK, drinkName, measureUnit, quantity, dateTime));
+        int unit = units.intern(measureUnit);
+        int secondOfDay = dateTime.toLocalTime().toSecondOfDay();
+        int durationSeconds = (int) duration.getSeconds();
+        double[] contribution = new double[Metric.VALUES.length];
+        for (Metric metric : Metric.VALUES) {
+            if (metric.type == type) {
+                contribution[metric.ordinal()] = quantityOf(type, unit, quantity, secondOfDay, durationSeconds,
+                        metric.unit.ordinal(), allRange);
+            }
+        }
+        long epochSecond = dateTime.toEpochSecond(ZoneOffset.UTC);
+        if (journal != null) {
+            journal.append(type, name, measureUnit, quantity, epochSecond, durationSeconds);
+        }
+        day(date).add(type, names.intern(name), unit, quantity, epochSecond, durationSeconds, contribution);
+        rollups.add(date.toEpochDay(), contribution);
+        tier(date.toEpochDay());
+        retain(date.toEpochDay());
+        changed(date);
+    }
+
+    /**
+     * Called after every write to {@code epochDay}: moves the days that fell behind the off-heap horizon
+     * as the newest day advances, and packs a day behind it again that a late record has unpacked.
+     */
+    private void tier(long epochDay) {
+        if (offHeapAfterDays == 0 || epochDay >= tieredBefore && epochDay <= newestDay) return;
+        synchronized (tiering) {
+            if (epochDay < tieredBefore) {
+                // retention may have dropped the day since the write
+                DayRecords day = records.get(LocalDate.ofEpochDay(epochDay));
+                if (day != null) day.moveOffHeap();
+                return;
+            }
+            if (epochDay <= newestDay) return;
+            long first = tieredBefore;
+            long cutoff = epochDay - offHeapAfterDays;
+            newestDay = epochDay;
+            // set first, so a writer that unpacks a day after it was moved is sure to see it is behind
+            tieredBefore = Math.max(first, cutoff);
+            if (first == Long.MIN_VALUE) {
+                records.forEach((date, day) -> {
+                    if (date.toEpochDay() < cutoff) day.moveOffHeap();
+                });
+            } else {
+                for (long day = first; day < cutoff; day++) {
+                    DayRecords records = this.records.get(LocalDate.ofEpochDay(day));
+                    if (records != null) records.moveOffHeap();
+                }
+            }
+        }
+    }
+
+    /**
+     * Called after every write to {@code epochDay}: summarizes or drops again a day behind the retention
+     * horizons that a late record went to, and has a background pass on the common fork-join pool move
+     * the horizons along as the newest day advances.
+     */
+    private void retain(long epochDay) {
+        if (rawRecordDays == 0 && retentionDays == 0) return;
+        if (epochDay < droppedBefore) {
+            records.remove(LocalDate.ofEpochDay(epochDay));
+        } else if (epochDay < summarizedBefore) {
+            DayRecords day = records.get(LocalDate.ofEpochDay(epochDay));
+            if (day != null) day.summarize();
+        }
+        if (epochDay <= retainedNewestDay.get()) return;
+        retainedNewestDay.accumulateAndGet(epochDay, Math::max);
+        if (evicting.compareAndSet(false, true)) {
+            eviction = CompletableFuture.runAsync(this::evict, ForkJoinPool.commonPool());
+        }
+    }
+
+    /**
+     * Moves the retention horizons up to the newest day, a day at a time so writers and readers of a
+     * day only ever wait for that day's own summary. Runs again when the newest day advanced meanwhile.
+     */
+    private void evict() {
+        long newest;
+        do {
+            newest = retainedNewestDay.get();
+            if (retentionDays > 0) dropBefore(newest - retentionDays);
+            if (rawRecordDays > 0) summarizeBefore(newest - rawRecordDays);
+            evicting.set(false);
+        } while (retainedNewestDay.get() > newest && evicting.compareAndSet(false, true));
+    }
+
+    private void dropBefore(long cutoff) {
+        long first = droppedBefore;
+        if (cutoff <= first) return;
+        // set first, so a writer that brings a day back after it was dropped is sure to see it is behind
+        droppedBefore = cutoff;
+        rollups.dropBefore(cutoff);
+        forEachDay(first, cutoff, date -> {
+            if (records.remove(date) != null) changed(date);
+        });
+    }
+
+    private void summarizeBefore(long cutoff) {
+        long first = Math.max(summarizedBefore, droppedBefore);
+        if (cutoff <= first) return;
+        summarizedBefore = cutoff;
+        forEachDay(first, cutoff, date -> {
+            DayRecords day = records.get(date);
+            if (day != null) day.summarize();
+        });
+    }
+
+    /**
+     * Calls {@code action} with every recorded day in {@code [from, to)}, walking the range when it is
+     * shorter than the recorded days and the recorded days otherwise.
+     */
+    private void forEachDay(long from, long to, Consumer<LocalDate> action) {
+        if (from != Long.MIN_VALUE && to - from <= records.size()) {
+            for (long day = from; day < to; day++) {
+                action.accept(LocalDate.ofEpochDay(day));
+            }
+        } else {
+            for (LocalDate date : records.keySet()) {
+                long day = date.toEpochDay();
+                if (day >= from && day < to) action.accept(date);
+            }
+        }
+    }
+
+    /**
+     * The latest background pass of {@link HealthServiceSetup#setRetentionDays retention}, done once
+     * every day it found behind a horizon is summarized or dropped.
+     */
+    CompletableFuture<Void> eviction() {
+        return eviction;
+    }
+
+    private void changed(LocalDate date) {
+        reportCache.invalidate(date.toEpochDay());
+        progress.changed(date);
+        for (RollingPeriodReport report : rollingReports) {
+            report.changed(date);
+        }
+    }
+
+    private DayRecords day(LocalDate date) {
+        DayRecords day = records.get(date);
+        return day != null ? day : records.computeIfAbsent(date, key -> new DayRecords());
+    }
+
+    /**
+     * Records every event of the batch. Events are grouped by day so each day is locked, sized and has
+     * its totals updated once per batch rather than once per event.
+     */
+    public void ingest(RecordBatch batch) {
+        long start = instrumentation.start();
+        store(batch);
+        instrumentation.stop(Instrumentation.Operation.INGEST, start);
+    }
+
+    private void store(RecordBatch batch) {
+        if (journal != null) {
+            journal.append(batch);
+        }
+        apply(batch);
+    }
+
+    private void apply(RecordBatch batch) {
+        int size = batch.size();
+        if (size == 0) return;
+        int[] unitCodes = new int[size];
+        int[] nameCodes = new int[size];
+        long[] epochDays = new long[size];
+        long firstDay = Long.MAX_VALUE;
+        long lastDay = Long.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            // exports repeat the same unit and name strings, so skip the dictionary for repeats
+            unitCodes[i] = i > 0 && batch.measureUnit(i) == batch.measureUnit(i - 1)
+                    ? unitCodes[i - 1] : units.intern(batch.measureUnit(i));
+            nameCodes[i] = i > 0 && batch.name(i) == batch.name(i - 1)
+                    ? nameCodes[i - 1] : names.intern(batch.name(i));
+            epochDays[i] = Math.floorDiv(batch.epochSecond(i), SECONDS_PER_DAY);
+            firstDay = Math.min(firstDay, epochDays[i]);
+            lastDay = Math.max(lastDay, epochDays[i]);
+        }
+        int[] order = RecordBatch.orderByDay(epochDays, firstDay, lastDay);
+        double[] contributions = new double[size * Metric.VALUES.length];
+        double[] contribution = new double[Metric.VALUES.length];
+        for (int from = 0, to; from < size; from = to) {
+            long epochDay = epochDays[order[from]];
+            long startOfDay = epochDay * SECONDS_PER_DAY;
+            Arrays.fill(contribution, 0);
+            for (to = from; to < size && epochDays[order[to]] == epochDay; to++) {
+                int i = order[to];
+                byte type = batch.type(i);
+                for (Metric metric : Metric.VALUES) {
+                    if (metric.type == type) {
+                        double quantity = quantityOf(type, unitCodes[i], batch.quantity(i),
+                                (int) (batch.epochSecond(i) - startOfDay), batch.durationSeconds(i),
+                                metric.unit.ordinal(), allRange);
+                        contributions[i * Metric.VALUES.length + metric.ordinal()] = quantity;
+                        contribution[metric.ordinal()] += quantity;
+                    }
+                }
+            }
+            int count = to - from;
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            DayRecords day = records.get(date);
+            if (day == null) {
+                day = records.computeIfAbsent(date, key -> new DayRecords(count));
+            }
+            day.addAll(batch, order, from, to, nameCodes, unitCodes, contributions, contribution);
+            rollups.add(epochDay, contribution);
+            tier(epochDay);
+            retain(epochDay);
+            changed(date);
+        }
+    }
+
+    /**
+     * Writes the setup and every record to {@code channel} as a {@link RecordArchiveWriter} archive,
+     * a day at a time in date order, summarized days as their totals. The channel is left open.
+     */
+    public void exportTo(WritableByteChannel channel) throws IOException {
+        LocalDate[] dates = records.keySet().toArray(new LocalDate[0]);
+        Arrays.sort(dates);
+        try (RecordArchiveWriter writer = new RecordArchiveWriter(channel, setup)) {
+            for (LocalDate date : dates) {
+                DayRecords records = this.records.get(date);
+                if (records == null) continue; // dropped by retention since
+                DayRecords.Segment day = records.segment();
+                if (day.isSummary()) {
+                    writer.writeSummary(date.toEpochDay(), summarized(day, date));
+                }
+                for (int i = 0; i < day.size(); i++) {
+                    writer.write(day.type(i), names.valueOf(day.name(i)), units.valueOf(day.unit(i)),
+                            day.quantity(i), day.epochSecond(i), day.durationSeconds(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * The totals of a summarized day less what the records it still has add to them, which the
+     * archive holds next to those records.
+     */
+    private double[] summarized(DayRecords.Segment day, LocalDate date) {
+        double[] totals = new double[Metric.VALUES.length];
+        for (Metric metric : Metric.VALUES) {
+            totals[metric.ordinal()] = day.total(metric);
+        }
+        long startOfDay = date.toEpochDay() * SECONDS_PER_DAY;
+        for (int i = 0; i < day.size(); i++) {
+            for (Metric metric : Metric.VALUES) {
+                if (metric.type == day.type(i)) {
+                    totals[metric.ordinal()] -= quantityOf(day.type(i), day.unit(i), day.quantity(i),
+                            (int) (day.epochSecond(i) - startOfDay), day.durationSeconds(i),
+                            metric.unit.ordinal(), allRange);
+                }
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * A service with the setup and records of an archive written by {@link #exportTo}, ingested in
+     * batches so the archive is never held in memory as a whole.
+     */
+    public static HealthService importFrom(ReadableByteChannel channel) throws IOException {
+        RecordArchiveReader reader = new RecordArchiveReader(channel);
+        HealthService service = new HealthService(reader.getSetup());
+        RecordBatch batch = new RecordBatch(IMPORT_BATCH_SIZE);
+        while (reader.read(batch, IMPORT_BATCH_SIZE, service::restore)) {
+            service.ingest(batch);
+        }
+        return service;
+    }
+
+    /**
+     * Adds the totals of an archived day summary, like the records it summarizes would.
+     */
+    private void restore(double[] totals, long epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        day(date).addSummary(totals);
+        rollups.add(epochDay, totals);
+        tier(epochDay);
+        retain(epochDay);
+        changed(date);
+    }
+
+    public void drink(String drinkName, String measureUnit, double quantity, LocalDateTime dateTime) {
+        long start = instrumentation.start();
+        record(DayRecords.DRINK, drinkName, measureUnit, quantity, dateTime, Duration.ZERO);
+        instrumentation.stop(Instrumentation.Operation.DRINK, start);
+    }
+
+    /**
+     * Amount drunk within {@code range}, which need not be one of the setup's named ranges.
+     */
+    public double drunk(TimeRange range, String measureUnit, LocalDate requestDate) {
+        long start = instrumentation.start();
+        double total = sum(DayRecords.DRINK, range, measureUnit, requestDate);
+        instrumentation.stop(Instrumentation.Operation.DRUNK, start);
+        return total;
+    }
+
+    /**
+     * Amounts drunk in each {@code minutes} long interval of the day, for charts.
+     *
+     * @see #eatenByInterval
+     */
+    public double[] drunkByInterval(String measureUnit, LocalDate requestDate, int minutes) {
+        return byInterval(DayRecords.DRINK, measureUnit, requestDate, minutes);
     }
 
     public double drunk(String measureUnit, LocalDate requestDate) {
-        return calculate(DRINK, measureUnit, ALL, requestDate);
+        long start = instrumentation.start();
+        double total = total(Metric.LITERS, measureUnit, requestDate);
+        if (Double.isNaN(total)) total = calculate(DayRecords.DRINK, measureUnit, ALL, requestDate);
+        instrumentation.stop(Instrumentation.Operation.DRUNK, start);
+        return total;
     }
 
     public void eat(String foodName, String measureUnit, double quantity, LocalDateTime dateTime) {
-        LocalDate date = dateTime.toLocalDate();
-        records.putIfAbsent(date, new ArrayList<>());
-        records.get(date).add(new Record(FOOD, foodName, measureUnit, quantity, dateTime));
+        long start = instrumentation.start();
+        record(DayRecords.FOOD, foodName, measureUnit, quantity, dateTime, Duration.ZERO);
+        instrumentation.stop(Instrumentation.Operation.EAT, start);
+    }
+
+    /**
+     * Amount eaten within {@code range}, which need not be one of the setup's named ranges.
+     */
+    public double eaten(TimeRange range, String measureUnit, LocalDate requestDate) {
+        long start = instrumentation.start();
+        double total = sum(DayRecords.FOOD, range, measureUnit, requestDate);
+        instrumentation.stop(Instrumentation.Operation.EATEN, start);
+        return total;
+    }
+
+    /**
+     * Amounts eaten in each {@code minutes} long interval of the day, for charts: element {@code k}
+     * holds what was eaten later than {@code k * minutes} into the day and up to {@code (k + 1) *
+     * minutes}, the first one also what was eaten at midnight. The interval must be a whole number of
+     * quarter hours that divides the day.
+     */
+    public double[] eatenByInterval(String measureUnit, LocalDate requestDate, int minutes) {
+        return byInterval(DayRecords.FOOD, measureUnit, requestDate, minutes);
     }
 
     public double eaten(String meal, String measureUnit, LocalDate requestDate) {
-        return calculate(FOOD, measureUnit, meal, requestDate);
+        long start = instrumentation.start();
+        double total = ALL.equals(meal) ? total(Metric.KILOCALS, measureUnit, requestDate) : Double.NaN;
+        if (Double.isNaN(total)) total = calculate(DayRecords.FOOD, measureUnit, meal, requestDate);
+        instrumentation.stop(Instrumentation.Operation.EATEN, start);
+        return total;
+    }
+
+    /**
+     * Amounts eaten within each of the given meals' time ranges, each read off the day's intraday sums.
+     * Meals missing from the setup report 0.
+     */
+    public double[] eatenByMeal(String measureUnit, LocalDate requestDate, String... meals) {
+        long start = instrumentation.start();
+        double[] eaten = new double[meals.length];
+        DayRecords.Segment day = snapshot(requestDate);
+        for (int meal = 0; day != null && meal < meals.length; meal++) {
+            eaten[meal] = sum(day, DayRecords.FOOD, measureUnit, timeRanges.idOf(meals[meal]), requestDate);
+        }
+        instrumentation.stop(Instrumentation.Operation.EATEN_BY_MEAL, start);
+        return eaten;
+    }
+
+    /**
+     * Amount moved within {@code range}, which need not be one of the setup's named ranges. Moves count
+     * towards the range their start falls in.
+     */
+    public double moved(TimeRange range, String measureUnit, LocalDate requestDate) {
+        long start = instrumentation.start();
+        double total = sum(DayRecords.MOVE, range, measureUnit, requestDate);
+        instrumentation.stop(Instrumentation.Operation.MOVED, start);
+        return total;
+    }
+
+    /**
+     * Amounts moved in each {@code minutes} long interval of the day, by the start of each move.
+     *
+     * @see #eatenByInterval
+     */
+    public double[] movedByInterval(String measureUnit, LocalDate requestDate, int minutes) {
+        return byInterval(DayRecords.MOVE, measureUnit, requestDate, minutes);
+    }
+
+    private double sum(byte type, TimeRange range, String measureUnit, LocalDate date) {
+        DayRecords.Segment day = snapshot(date);
+        if (day == null) return 0;
+        return range.isTimeRangeUnbound()
+                ? sum(day, type, measureUnit, -1, (int) SECONDS_PER_DAY, date)
+                : sum(day, type, measureUnit, range.startSecond(), range.endSecond(), date);
+    }
+
+    private double[] byInterval(byte type, String measureUnit, LocalDate date, int minutes) {
+        int seconds = minutes * 60;
+        if (minutes <= 0 || seconds % DayRecords.SLOT_SECONDS != 0 || SECONDS_PER_DAY % seconds != 0) {
+            throw new IllegalArgumentException("Not a whole number of quarter hours dividing the day: " + minutes);
+        }
+        long start = instrumentation.start();
+        double[] intervals = new double[(int) (SECONDS_PER_DAY / seconds)];
+        DayRecords.Segment day = snapshot(date);
+        for (int k = 0; day != null && k < intervals.length; k++) {
+            intervals[k] = sum(day, type, measureUnit, k == 0 ? -1 : k * seconds, (k + 1) * seconds, date);
+        }
+        instrumentation.stop(Instrumentation.Operation.BY_INTERVAL, start);
+        return intervals;
     }
 
     public double moved(String measureUnit, LocalDate requestDate) {
-        return calculate(MOVE, measureUnit, ALL, requestDate);
+        long start = instrumentation.start();
+        double total = total(Metric.STEPS, measureUnit, requestDate);
+        if (Double.isNaN(total)) total = total(Metric.HOURS, measureUnit, requestDate);
+        if (Double.isNaN(total)) total = calculate(DayRecords.MOVE, measureUnit, ALL, requestDate);
+        instrumentation.stop(Instrumentation.Operation.MOVED, start);
+        return total;
     }
 
+    /**
+     * Records a move. One that crosses midnight is split into a piece per day, each with its share of
+     * the quantity, as {@link RecordBatch#move} does.
+     */
     public void move(String measureUnit, double quantity, LocalDateTime moveStart, LocalDateTime moveEnd) {
+        long start = instrumentation.start();
         if (moveStart.toLocalDate().isEqual(moveEnd.toLocalDate())) {
-            LocalDate date = moveStart.toLocalDate();
-            Duration duration = Duration.between(moveStart, moveEnd);
-            records.putIfAbsent(date, new ArrayList<>());
-            records.get(date).add(new Record(MOVE, null, measureUnit, quantity, moveStart, duration));
+            record(DayRecords.MOVE, null, measureUnit, quantity, moveStart, Duration.between(moveStart, moveEnd));
         } else {
-            throw new IllegalStateException(); // to be implemented once feature is requested
+            store(new RecordBatch().move(measureUnit, quantity, moveStart, moveEnd));
         }
+        instrumentation.stop(Instrumentation.Operation.MOVE, start);
     }
 }
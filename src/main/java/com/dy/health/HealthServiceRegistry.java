@@ -0,0 +1,166 @@
+package com.dy.health;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Many users' {@link HealthService}s behind one engine. Users are spread over a fixed set of shards,
+ * one per core by default. Every shard owns its users' services and runs all work on them on a
+ * single thread, so a user's calls are applied in submission order without contending with other
+ * shards. Setups that are equal are stored once and shared by all users registered with them.
+ */
+public class HealthServiceRegistry implements AutoCloseable {
+    private final Shard[] shards;
+    private final Map<HealthServiceSetup, HealthServiceSetup> setups = new ConcurrentHashMap<>();
+
+    public HealthServiceRegistry() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public HealthServiceRegistry(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("At least one shard is required: " + shardCount);
+        }
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+    }
+
+    public CompletableFuture<Void> register(String userId, HealthServiceSetup setup) {
+        HealthServiceSetup shared = setups.computeIfAbsent(new HealthServiceSetup(setup), key -> key);
+        return shardOf(userId).submit(services -> {
+            services.putIfAbsent(userId, HealthService.sharing(shared));
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> execute(String userId, Consumer<HealthService> action) {
+        return submit(userId, service -> {
+            action.accept(service);
+            return null;
+        });
+    }
+
+    public <T> CompletableFuture<T> submit(String userId, Function<HealthService, T> action) {
+        return shardOf(userId).submit(services -> action.apply(serviceOf(services, userId)));
+    }
+
+    public CompletableFuture<DayReport> getDayReport(String userId, LocalDate date) {
+        return submit(userId, service -> service.getDayReport(date));
+    }
+
+    public CompletableFuture<PeriodReport> getPeriodReport(String userId, LocalDate startDate, LocalDate endDate) {
+        return submit(userId, service -> service.getPeriodReport(startDate, endDate));
+    }
+
+    /**
+     * Day reports of a cohort, computed by all involved shards in parallel.
+     */
+    public CompletableFuture<Map<String, DayReport>> getDayReports(Collection<String> userIds, LocalDate date) {
+        return forCohort(userIds, service -> service.getDayReport(date));
+    }
+
+    /**
+     * Period reports of a cohort with exact medians, computed on the common fork-join pool.
+     */
+    public CompletableFuture<Map<String, PeriodReport>> getPeriodReports(Collection<String> userIds,
+                                                                        LocalDate startDate, LocalDate endDate) {
+        return getPeriodReports(userIds, startDate, endDate, MedianMode.exact(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Period reports of a cohort, split by user and by date range into tasks on {@code pool}. The
+     * shards only hand out their services; reading them is safe alongside the shards' writes, so the
+     * reports take as many cores as the pool has rather than one per shard.
+     */
+    public CompletableFuture<Map<String, PeriodReport>> getPeriodReports(Collection<String> userIds,
+                                                                        LocalDate startDate, LocalDate endDate,
+                                                                        MedianMode medianMode, ForkJoinPool pool) {
+        return forCohort(userIds, service -> service).thenApplyAsync(services -> {
+            String[] users = services.keySet().toArray(new String[0]);
+            HealthService[] cohort = new HealthService[users.length];
+            for (int i = 0; i < users.length; i++) {
+                cohort[i] = services.get(users[i]);
+            }
+            PeriodReport[] reports = CohortPeriodReports.compute(pool, cohort, startDate, endDate, medianMode);
+            Map<String, PeriodReport> reportsByUser = new HashMap<>();
+            for (int i = 0; i < users.length; i++) {
+                reportsByUser.put(users[i], reports[i]);
+            }
+            return reportsByUser;
+        }, pool);
+    }
+
+    private <T> CompletableFuture<Map<String, T>> forCohort(Collection<String> userIds,
+                                                          Function<HealthService, T> report) {
+        Map<Shard, List<String>> usersByShard = new HashMap<>();
+        for (String userId : userIds) {
+            usersByShard.computeIfAbsent(shardOf(userId), shard -> new ArrayList<>()).add(userId);
+        }
+        List<CompletableFuture<Map<String, T>>> parts = new ArrayList<>();
+        usersByShard.forEach((shard, users) -> parts.add(shard.submit(services -> {
+            Map<String, T> reports = new HashMap<>();
+            for (String userId : users) {
+                reports.put(userId, report.apply(serviceOf(services, userId)));
+            }
+            return reports;
+        })));
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            Map<String, T> reports = new HashMap<>();
+            for (CompletableFuture<Map<String, T>> part : parts) {
+                reports.putAll(part.join());
+            }
+            return reports;
+        });
+    }
+
+    int shardCount() {
+        return shards.length;
+    }
+
+    int distinctSetupCount() {
+        return setups.size();
+    }
+
+    private Shard shardOf(String userId) {
+        int hash = userId.hashCode();
+        return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+    }
+
+    private static HealthService serviceOf(Map<String, HealthService> services, String userId) {
+        HealthService service = services.get(userId);
+        if (service == null) {
+            throw new IllegalArgumentException("Unknown user: " + userId);
+        }
+        return service;
+    }
+
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            shard.executor.shutdown();
+        }
+    }
+
+    private static final class Shard {
+        // only ever touched by the shard's own thread
+        private final Map<String, HealthService> services = new HashMap<>();
+        private final ExecutorService executor;
+
+        Shard(int index) {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "health-shard-" + index);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        <T> CompletableFuture<T> submit(Function<Map<String, HealthService>, T> task) {
+            return CompletableFuture.supplyAsync(() -> task.apply(services), executor);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.dy.health;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
 public class HealthServiceSetup {
     private Map<String, TimeRange> namedTimeRanges = new HashMap<>();
@@ -9,6 +10,27 @@ public class HealthServiceSetup {
     private double minHoursOfMovementPerDay;
     private double minKilocalsPerDay;
     private double minLitersPerDay;
+    private boolean instrumented;
+    private int offHeapAfterDays;
+    private int reportCacheDays;
+    private int rawRecordDays;
+    private int retentionDays;
+
+    public HealthServiceSetup() {
+    }
+
+    public HealthServiceSetup(HealthServiceSetup other) {
+        this.namedTimeRanges = new HashMap<>(other.namedTimeRanges);
+        this.minStepsPerDay = other.minStepsPerDay;
+        this.minHoursOfMovementPerDay = other.minHoursOfMovementPerDay;
+        this.minKilocalsPerDay = other.minKilocalsPerDay;
+        this.minLitersPerDay = other.minLitersPerDay;
+        this.instrumented = other.instrumented;
+        this.offHeapAfterDays = other.offHeapAfterDays;
+        this.reportCacheDays = other.reportCacheDays;
+        this.rawRecordDays = other.rawRecordDays;
+        this.retentionDays = other.retentionDays;
+    }
 
     public Map<String, TimeRange> getNamedTimeRanges() {
         return namedTimeRanges;
@@ -54,4 +76,105 @@ public class HealthServiceSetup {
         this.minLitersPerDay = minLitersPerDay;
         return this;
     }
+
+    public boolean isInstrumented() {
+        return instrumented;
+    }
+
+    /**
+     * Whether services record call latencies and expose them through {@link HealthService#getInstrumentation()}.
+     */
+    public HealthServiceSetup setInstrumented(boolean instrumented) {
+        this.instrumented = instrumented;
+        return this;
+    }
+
+    public int getOffHeapAfterDays() {
+        return offHeapAfterDays;
+    }
+
+    /**
+     * Keeps the records of days more than {@code offHeapAfterDays} days before the newest recorded
+     * day outside of the heap; 0, the default, keeps every day on the heap.
+     */
+    public HealthServiceSetup setOffHeapAfterDays(int offHeapAfterDays) {
+        if (offHeapAfterDays < 0) {
+            throw new IllegalArgumentException("Negative number of days: " + offHeapAfterDays);
+        }
+        this.offHeapAfterDays = offHeapAfterDays;
+        return this;
+    }
+
+    public int getReportCacheDays() {
+        return reportCacheDays;
+    }
+
+    /**
+     * Caches the day and period reports of a service, least recently used first out, as long as they
+     * cover at most {@code reportCacheDays} days together; 0, the default, caches none.
+     */
+    public HealthServiceSetup setReportCacheDays(int reportCacheDays) {
+        if (reportCacheDays < 0) {
+            throw new IllegalArgumentException("Negative number of days: " + reportCacheDays);
+        }
+        this.reportCacheDays = reportCacheDays;
+        return this;
+    }
+
+    public int getRawRecordDays() {
+        return rawRecordDays;
+    }
+
+    /**
+     * Keeps the records of days more than {@code rawRecordDays} days before the newest recorded day
+     * only as daily totals, which answer whole day queries and reports like the records did but time
+     * range queries with 0; 0, the default, keeps every record. Summarized days are not exported.
+     */
+    public HealthServiceSetup setRawRecordDays(int rawRecordDays) {
+        if (rawRecordDays < 0) {
+            throw new IllegalArgumentException("Negative number of days: " + rawRecordDays);
+        }
+        this.rawRecordDays = rawRecordDays;
+        return this;
+    }
+
+    public int getRetentionDays() {
+        return retentionDays;
+    }
+
+    /**
+     * Drops everything recorded for days more than {@code retentionDays} days before the newest recorded
+     * day and ignores later records for them; 0, the default, keeps every day.
+     */
+    public HealthServiceSetup setRetentionDays(int retentionDays) {
+        if (retentionDays < 0) {
+            throw new IllegalArgumentException("Negative number of days: " + retentionDays);
+        }
+        this.retentionDays = retentionDays;
+        return this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        HealthServiceSetup that = (HealthServiceSetup) o;
+        return Double.compare(that.minStepsPerDay, minStepsPerDay) == 0 &&
+                Double.compare(that.minHoursOfMovementPerDay, minHoursOfMovementPerDay) == 0 &&
+                Double.compare(that.minKilocalsPerDay, minKilocalsPerDay) == 0 &&
+                Double.compare(that.minLitersPerDay, minLitersPerDay) == 0 &&
+                instrumented == that.instrumented &&
+                offHeapAfterDays == that.offHeapAfterDays &&
+                reportCacheDays == that.reportCacheDays &&
+                rawRecordDays == that.rawRecordDays &&
+                retentionDays == that.retentionDays &&
+                Objects.equals(namedTimeRanges, that.namedTimeRanges);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(namedTimeRanges, minStepsPerDay, minHoursOfMovementPerDay,
+                minKilocalsPerDay, minLitersPerDay, instrumented, offHeapAfterDays, reportCacheDays,
+                rawRecordDays, retentionDays);
+    }
 }
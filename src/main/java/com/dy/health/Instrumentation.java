@@ -0,0 +1,179 @@
+package com.dy.health;
+
+import javax.management.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Call latencies of the {@link HealthService} methods listed in {@link Operation} and gauges over its
+ * stored records.
+ * Recording allocates nothing; values are read by polling {@link #export(MetricsExporter)},
+ * {@link #toText()} or the JMX view from {@link #asMBean()}. A disabled instrumentation records
+ * nothing, so a service that is not instrumented only pays a branch per call.
+ */
+public final class Instrumentation {
+
+    public enum Operation {
+        DRINK("drink"),
+        EAT("eat"),
+        MOVE("move"),
+        INGEST("ingest"),
+        DRUNK("drunk"),
+        EATEN("eaten"),
+        EATEN_BY_MEAL("eatenByMeal"),
+        BY_INTERVAL("byInterval"),
+        MOVED("moved"),
+        DAY_REPORT("getDayReport"),
+        UNFULFILLED_DAY_NORM_REPORT("getUnfulfilledDayNormReport"),
+        PERIOD_REPORT("getPeriodReport"),
+        PERIOD_METRIC("periodMetric"),
+        CALCULATE("calculate");
+
+        private static final Operation[] VALUES = values();
+
+        final String metricName;
+
+        Operation(String metricName) {
+            this.metricName = metricName;
+        }
+    }
+
+    private static final Instrumentation DISABLED = new Instrumentation(false);
+
+    private final boolean enabled;
+    private final LatencyHistogram[] latencies;
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+
+    private Instrumentation(boolean enabled) {
+        this.enabled = enabled;
+        this.latencies = new LatencyHistogram[enabled ? Operation.VALUES.length : 0];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    static Instrumentation create(boolean enabled) {
+        return enabled ? new Instrumentation(true) : DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    void stop(Operation operation, long start) {
+        if (enabled) {
+            latencies[operation.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    void gauge(String name, LongSupplier value) {
+        if (enabled) {
+            gauges.put(name, value);
+        }
+    }
+
+    public void export(MetricsExporter exporter) {
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            exporter.gauge(gauge.getKey(), gauge.getValue().getAsLong());
+        }
+        for (int i = 0; i < latencies.length; i++) {
+            LatencyHistogram histogram = latencies[i];
+            exporter.latency(Operation.VALUES[i].metricName, histogram.count(), histogram.mean(),
+                    histogram.percentile(0.5), histogram.percentile(0.9), histogram.percentile(0.99),
+                    histogram.max());
+        }
+    }
+
+    /**
+     * Every value as a {@code name value} line, latencies in nanoseconds.
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Long> value : values().entrySet()) {
+            text.append(value.getKey()).append(' ').append(value.getValue()).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * A read-only MBean with one attribute per value, ready to be registered with an MBean server.
+     */
+    public DynamicMBean asMBean() {
+        return new InstrumentationMBean();
+    }
+
+    private Map<String, Long> values() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        export(new MetricsExporter() {
+            @Override
+            public void gauge(String name, long value) {
+                values.put(name, value);
+            }
+
+            @Override
+            public void latency(String name, long count, long mean, long p50, long p90, long p99, long max) {
+                values.put(name + ".count", count);
+                values.put(name + ".mean", mean);
+                values.put(name + ".p50", p50);
+                values.put(name + ".p90", p90);
+                values.put(name + ".p99", p99);
+                values.put(name + ".max", max);
+            }
+        });
+        return values;
+    }
+
+    private class InstrumentationMBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Long value = values().get(attribute);
+            if (value == null) throw new AttributeNotFoundException(attribute);
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Long> values = values();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                Long value = values.get(attribute);
+                if (value != null) list.add(new Attribute(attribute, value));
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Read-only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            Map<String, Long> values = values();
+            MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+            int i = 0;
+            for (String name : values.keySet()) {
+                attributes[i++] = new MBeanAttributeInfo(name, Long.class.getName(), name, true, false, false);
+            }
+            return new MBeanInfo(Instrumentation.class.getName(), "HealthService instrumentation", attributes,
+                    null, null, null);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.dy.health;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Memory-mapped file of fixed-width 32 byte entries behind a 32 byte header.
+ * <pre>
+ * record:  kind(1) type(1) unit(2) name(4) epochSecond(8) quantity(8) durationSeconds(4) crc(4)
+ * string:  kind(1) 0(1) length(2) code(4) bytes 0..19(20) crc(4) [bytes 20.. padded to whole entries]
+ * </pre>
+ * Names and units are written once as string entries and referred to by code afterwards. Every entry
+ * ends with a CRC32 of everything before it, string bytes included; reading stops at the first entry
+ * that is empty or fails its check, which is how a torn last write is discarded on open.
+ */
+final class JournalFile implements Closeable {
+    static final int ENTRY_SIZE = 32;
+
+    private static final long MAGIC = 0x484D4A524E4C0001L;
+    private static final int HEADER_SIZE = 32;
+    private static final int INITIAL_MAPPING = 1 << 20;
+    private static final byte RECORD = 1;
+    private static final byte NAME = 2;
+    private static final byte UNIT = 3;
+    private static final int INLINE_STRING_BYTES = 20;
+    private static final int CRC_OFFSET = 28;
+
+    private final FileChannel channel;
+    private final int syncEvery;
+    private final Map<String, Integer> nameCodes = new HashMap<>();
+    private final Map<String, Integer> unitCodes = new HashMap<>();
+    private String[] names = new String[16];
+    private String[] units = new String[16];
+    private final CRC32 crc = new CRC32();
+    private MappedByteBuffer buffer;
+    private int position;
+    private int unsynced;
+
+    private JournalFile(FileChannel channel, int syncEvery) {
+        this.channel = channel;
+        this.syncEvery = syncEvery;
+    }
+
+    /**
+     * Opens or creates the file and positions appends after its last intact entry.
+     *
+     * @param syncEvery force the mapping to disk after that many appends, never when not positive
+     */
+    static JournalFile open(Path path, int syncEvery) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        JournalFile file = new JournalFile(channel, syncEvery);
+        try {
+            file.map(Math.max(INITIAL_MAPPING, channel.size()));
+            if (file.buffer.getLong(0) != MAGIC) {
+                if (channel.size() > INITIAL_MAPPING || file.buffer.getLong(0) != 0) {
+                    throw new IOException("Not a health journal: " + path);
+                }
+                file.buffer.putLong(0, MAGIC);
+            }
+            file.recover();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return file;
+    }
+
+    private void map(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Journal exceeds " + Integer.MAX_VALUE + " bytes, compact it");
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private void recover() {
+        position = HEADER_SIZE;
+        int end;
+        while ((end = validEntryEnd(position)) > 0) {
+            if (buffer.get(position) != RECORD) {
+                String value = readString(position);
+                define(buffer.get(position), buffer.getInt(position + 4), value);
+            }
+            position = end;
+        }
+        // wipe whatever a torn write left behind so it can never be mistaken for entries later
+        int i = position;
+        for (; i + Long.BYTES <= buffer.capacity(); i += Long.BYTES) {
+            if (buffer.getLong(i) != 0) buffer.putLong(i, 0);
+        }
+        for (; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    /**
+     * End of the entry at {@code offset}, or -1 when there is no intact entry there.
+     */
+    private int validEntryEnd(int offset) {
+        if (offset + ENTRY_SIZE > buffer.capacity()) return -1;
+        byte kind = buffer.get(offset);
+        int end;
+        if (kind == RECORD) {
+            end = offset + ENTRY_SIZE;
+        } else if (kind == NAME || kind == UNIT) {
+            end = offset + ENTRY_SIZE + padded(buffer.getShort(offset + 2) - INLINE_STRING_BYTES);
+            if (end > buffer.capacity()) return -1;
+        } else {
+            return -1;
+        }
+        return checksum(offset, end) == buffer.getInt(offset + CRC_OFFSET) ? end : -1;
+    }
+
+    private int checksum(int offset, int end) {
+        crc.reset();
+        ByteBuffer view = buffer.duplicate();
+        view.limit(offset + CRC_OFFSET).position(offset);
+        crc.update(view);
+        view.limit(end).position(offset + ENTRY_SIZE);
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    private static int padded(int bytes) {
+        return bytes <= 0 ? 0 : (bytes + ENTRY_SIZE - 1) / ENTRY_SIZE * ENTRY_SIZE;
+    }
+
+    void append(byte type, String name, String measureUnit, double quantity, long epochSecond,
+                int durationSeconds) throws IOException {
+        int unit = code(UNIT, measureUnit);
+        int nameCode = code(NAME, name);
+        ensureCapacity(ENTRY_SIZE);
+        int offset = position;
+        buffer.put(offset, RECORD);
+        buffer.put(offset + 1, type);
+        buffer.putShort(offset + 2, (short) unit);
+        buffer.putInt(offset + 4, nameCode);
+        buffer.putLong(offset + 8, epochSecond);
+        buffer.putDouble(offset + 16, quantity);
+        buffer.putInt(offset + 24, durationSeconds);
+        buffer.putInt(offset + CRC_OFFSET, checksum(offset, offset + ENTRY_SIZE));
+        position += ENTRY_SIZE;
+        if (syncEvery > 0 && ++unsynced >= syncEvery) {
+            sync();
+        }
+    }
+
+    private int code(byte kind, String value) throws IOException {
+        if (value == null) return Dictionary.ABSENT;
+        Map<String, Integer> codes = kind == NAME ? nameCodes : unitCodes;
+        Integer code = codes.get(value);
+        if (code != null) return code;
+        int newCode = codes.size();
+        if (kind == UNIT && newCode > Short.MAX_VALUE) {
+            throw new IOException("Too many distinct measure units");
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IOException("Name is too long to journal: " + value.length() + " characters");
+        }
+        int end = position + ENTRY_SIZE + padded(bytes.length - INLINE_STRING_BYTES);
+        ensureCapacity(end - position);
+        int offset = position;
+        buffer.put(offset, kind);
+        buffer.putShort(offset + 2, (short) bytes.length);
+        buffer.putInt(offset + 4, newCode);
+        for (int i = 0; i < bytes.length; i++) {
+            buffer.put(i < INLINE_STRING_BYTES ? offset + 8 + i : offset + ENTRY_SIZE + i - INLINE_STRING_BYTES,
+                    bytes[i]);
+        }
+        buffer.putInt(offset + CRC_OFFSET, checksum(offset, end));
+        position = end;
+        define(kind, newCode, value);
+        return newCode;
+    }
+
+    private void define(byte kind, int code, String value) {
+        if (kind == NAME) {
+            nameCodes.put(value, code);
+            names = store(names, code, value);
+        } else {
+            unitCodes.put(value, code);
+            units = store(units, code, value);
+        }
+    }
+
+    private static String[] store(String[] values, int code, String value) {
+        if (code >= values.length) {
+            values = Arrays.copyOf(values, Math.max(values.length * 2, code + 1));
+        }
+        values[code] = value;
+        return values;
+    }
+
+    private String readString(int offset) {
+        byte[] bytes = new byte[buffer.getShort(offset + 2)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(i < INLINE_STRING_BYTES
+                    ? offset + 8 + i : offset + ENTRY_SIZE + i - INLINE_STRING_BYTES);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void ensureCapacity(int bytes) throws IOException {
+        if (position + bytes > buffer.capacity()) {
+            map(Math.max((long) buffer.capacity() * 2, (long) position + bytes));
+        }
+    }
+
+    /**
+     * Adds every intact record of the file to the batch, in the order they were appended.
+     */
+    void readInto(RecordBatch batch) {
+        for (int offset = HEADER_SIZE; offset < position; ) {
+            byte kind = buffer.get(offset);
+            if (kind == RECORD) {
+                int name = buffer.getInt(offset + 4);
+                int unit = buffer.getShort(offset + 2);
+                batch.add(buffer.get(offset + 1),
+                        name == Dictionary.ABSENT ? null : names[name],
+                        unit == Dictionary.ABSENT ? null : units[unit],
+                        buffer.getDouble(offset + 16),
+                        buffer.getLong(offset + 8),
+                        buffer.getInt(offset + 24));
+                offset += ENTRY_SIZE;
+            } else {
+                offset += ENTRY_SIZE + padded(buffer.getShort(offset + 2) - INLINE_STRING_BYTES);
+            }
+        }
+    }
+
+    /**
+     * Bytes taken by the header and the intact entries.
+     */
+    int length() {
+        return position;
+    }
+
+    void sync() {
+        buffer.force();
+        unsynced = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+}
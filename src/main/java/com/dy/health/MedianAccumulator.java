@@ -0,0 +1,18 @@
+package com.dy.health;
+
+interface MedianAccumulator {
+    void add(double value);
+
+    double median();
+
+    /**
+     * The value {@code quantile} of the way from the smallest to the largest one, interpolated between
+     * the two nearest values; 0.5 gives the {@link #median()}.
+     */
+    double quantile(double quantile);
+
+    /**
+     * Adds every value of {@code other}, which must come from the same {@link MedianMode}.
+     */
+    void merge(MedianAccumulator other);
+}
@@ -0,0 +1,45 @@
+package com.dy.health;
+
+/**
+ * How {@link HealthService#getPeriodReport(java.time.LocalDate, java.time.LocalDate, MedianMode)}
+ * computes its medians.
+ */
+public final class MedianMode {
+    private static final MedianMode EXACT = new MedianMode(0);
+
+    private final double relativeError;
+
+    private MedianMode(double relativeError) {
+        this.relativeError = relativeError;
+    }
+
+    /**
+     * Exact medians selected from a buffer holding one value per day of the range.
+     */
+    public static MedianMode exact() {
+        return EXACT;
+    }
+
+    /**
+     * Medians estimated in constant memory, each within {@code relativeError} (e.g. 0.01 for 1%)
+     * of the exact value. Meant for very long ranges.
+     */
+    public static MedianMode approximate(double relativeError) {
+        if (!(relativeError > 0 && relativeError < 1)) {
+            throw new IllegalArgumentException("Relative error must be within (0, 1): " + relativeError);
+        }
+        return new MedianMode(relativeError);
+    }
+
+    public boolean isExact() {
+        return relativeError == 0;
+    }
+
+    public double getRelativeError() {
+        return relativeError;
+    }
+
+    MedianAccumulator newAccumulator(int days) {
+        return isExact() ? new ExactMedian(days) : new QuantileSketch(relativeError);
+    }
+}
@@ -0,0 +1,18 @@
+package com.dy.health;
+
+enum Metric {
+    STEPS(DayRecords.MOVE, Unit.STEP),
+    HOURS(DayRecords.MOVE, Unit.HOUR),
+    KILOCALS(DayRecords.FOOD, Unit.KILOCALORIE),
+    LITERS(DayRecords.DRINK, Unit.LITER);
+
+    static final Metric[] VALUES = values();
+
+    final byte type;
+    final Unit unit;
+
+    Metric(byte type, Unit unit) {
+        this.type = type;
+        this.unit = unit;
+    }
+}
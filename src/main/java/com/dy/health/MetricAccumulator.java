@@ -0,0 +1,55 @@
+package com.dy.health;
+
+/**
+ * One metric's {@link MetricStatistics} fed a daily total at a time: Welford's running mean and sum
+ * of squared deviations, the extremes and the days meeting the norm, next to the quantile values.
+ * Accumulators of adjacent parts of a range merge like Chan et al.'s pairwise variance.
+ */
+final class MetricAccumulator {
+    private final MedianAccumulator quantiles;
+    private final double norm;
+    private int count;
+    private double mean;
+    private double squaredDeviations;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private int daysMeetingNorm;
+
+    MetricAccumulator(MedianMode medianMode, int days, double norm) {
+        this.quantiles = medianMode.newAccumulator(days);
+        this.norm = norm;
+    }
+
+    void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        squaredDeviations += delta * (value - mean);
+        if (value < min) min = value;
+        if (value > max) max = value;
+        if (value >= norm) daysMeetingNorm++;
+        quantiles.add(value);
+    }
+
+    void merge(MetricAccumulator other) {
+        quantiles.merge(other.quantiles);
+        if (other.count == 0) return;
+        int total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        squaredDeviations += other.squaredDeviations + delta * delta * count * other.count / total;
+        count = total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        daysMeetingNorm += other.daysMeetingNorm;
+    }
+
+    /**
+     * The quantiles are asked for in ascending order, which lets exact ones narrow down their selection.
+     */
+    MetricStatistics statistics() {
+        if (count == 0) return new MetricStatistics(0, 0, 0, 0, 0, 0, 0, 0, 0);
+        return new MetricStatistics(count, mean, Math.sqrt(squaredDeviations / count), min, max,
+                quantiles.quantile(0.1), quantiles.quantile(0.5), quantiles.quantile(0.9), daysMeetingNorm);
+    }
+}
@@ -0,0 +1,87 @@
+package com.dy.health;
+
+/**
+ * Statistics of one metric's daily totals over the days of a period, days without records counting
+ * as 0. Percentiles are interpolated between the two nearest daily totals, like the median.
+ */
+public final class MetricStatistics {
+    private final int days;
+    private final double mean;
+    private final double standardDeviation;
+    private final double min;
+    private final double max;
+    private final double percentile10;
+    private final double median;
+    private final double percentile90;
+    private final int daysMeetingNorm;
+
+    MetricStatistics(int days, double mean, double standardDeviation, double min, double max, double percentile10,
+                     double median, double percentile90, int daysMeetingNorm) {
+        this.days = days;
+        this.mean = mean;
+        this.standardDeviation = standardDeviation;
+        this.min = min;
+        this.max = max;
+        this.percentile10 = percentile10;
+        this.median = median;
+        this.percentile90 = percentile90;
+        this.daysMeetingNorm = daysMeetingNorm;
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Population standard deviation: the days of the period are all the days there are.
+     */
+    public double getStandardDeviation() {
+        return standardDeviation;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getPercentile10() {
+        return percentile10;
+    }
+
+    public double getMedian() {
+        return median;
+    }
+
+    public double getPercentile90() {
+        return percentile90;
+    }
+
+    /**
+     * Days whose total reached the daily minimum of the service's setup.
+     */
+    public int getDaysMeetingNorm() {
+        return daysMeetingNorm;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricStatistics{" +
+                "days=" + days +
+                ", mean=" + mean +
+                ", standardDeviation=" + standardDeviation +
+                ", min=" + min +
+                ", max=" + max +
+                ", percentile10=" + percentile10 +
+                ", median=" + median +
+                ", percentile90=" + percentile90 +
+                ", daysMeetingNorm=" + daysMeetingNorm +
+                '}';
+    }
+}
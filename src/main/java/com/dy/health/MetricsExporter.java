@@ -0,0 +1,14 @@
+package com.dy.health;
+
+/**
+ * Receives the current values of an {@link Instrumentation} when it is polled.
+ */
+public interface MetricsExporter {
+
+    void gauge(String name, long value);
+
+    /**
+     * Latencies of one operation in nanoseconds; {@code count} is the number of calls so far.
+     */
+    void latency(String name, long count, long mean, long p50, long p90, long p99, long max);
+}
@@ -0,0 +1,44 @@
+package com.dy.health;
+
+import java.time.LocalDate;
+
+/**
+ * The statistics of all four metrics fed from one pass over the day totals. Accumulators of adjacent
+ * parts of a range merge into the accumulator of the whole range.
+ */
+final class PeriodAccumulator {
+    private final MetricAccumulator[] metrics = new MetricAccumulator[DayRollups.METRICS];
+
+    /**
+     * @param norms daily minimum of each metric, indexed by {@link Metric#ordinal()}
+     */
+    PeriodAccumulator(MedianMode medianMode, int days, double[] norms) {
+        for (int metric = 0; metric < metrics.length; metric++) {
+            metrics[metric] = new MetricAccumulator(medianMode, days, norms[metric]);
+        }
+    }
+
+    /**
+     * Adds one day's totals, laid out like {@link DayRollups} at {@code offset}.
+     */
+    void add(double[] totals, int offset) {
+        for (int metric = 0; metric < metrics.length; metric++) {
+            metrics[metric].add(totals[offset + metric]);
+        }
+    }
+
+    PeriodAccumulator merge(PeriodAccumulator other) {
+        for (int metric = 0; metric < metrics.length; metric++) {
+            metrics[metric].merge(other.metrics[metric]);
+        }
+        return this;
+    }
+
+    PeriodReport report(LocalDate startDate, LocalDate endDate) {
+        MetricStatistics[] statistics = new MetricStatistics[metrics.length];
+        for (int metric = 0; metric < metrics.length; metric++) {
+            statistics[metric] = metrics[metric].statistics();
+        }
+        return new PeriodReport(startDate, endDate, statistics);
+    }
+}
@@ -1,15 +1,24 @@
 package com.dy.health;
 
 import java.time.LocalDate;
-
+import java.util.function.Function;
+
+/**
+ * Medians and further {@link MetricStatistics} of the daily totals over a period. A lazy report, made
+ * by {@link HealthService#lazyPeriodReport(LocalDate, LocalDate, MedianMode)}, computes a metric's
+ * statistics on first access and keeps them; {@link HealthService#getPeriodReport} has them all from
+ * the start. A report built from its medians alone has no further statistics.
+ */
 public class PeriodReport {
+    private static final int ALL_EVALUATED = (1 << Metric.VALUES.length) - 1;
+
     private final LocalDate startDate;
     private final LocalDate endDate;
 
-    private final double stepsMedian;
-    private final double hoursMovedMedian;
-    private final double kilocalsMedian;
-    private final double liquidLitersMedian;
+    private final double[] medians; // when known apart from the statistics
+    private final MetricStatistics[] statistics = new MetricStatistics[Metric.VALUES.length];
+    private final Function<Metric, MetricStatistics> evaluator;
+    private volatile int evaluated; // a bit per metric whose statistics are in statistics
 
     public PeriodReport(LocalDate startDate,
                         LocalDate endDate,
@@ -17,12 +26,30 @@ public class PeriodReport {
                         double hoursMovedMedian,
                         double kilocalsMedian,
                         double liquidLitersMedian) {
+        this(startDate, endDate, new double[Metric.VALUES.length], null);
+        medians[Metric.STEPS.ordinal()] = stepsMedian;
+        medians[Metric.HOURS.ordinal()] = hoursMovedMedian;
+        medians[Metric.KILOCALS.ordinal()] = kilocalsMedian;
+        medians[Metric.LITERS.ordinal()] = liquidLitersMedian;
+        this.evaluated = ALL_EVALUATED;
+    }
+
+    PeriodReport(LocalDate startDate, LocalDate endDate, MetricStatistics[] statistics) {
+        this(startDate, endDate, null, null);
+        System.arraycopy(statistics, 0, this.statistics, 0, statistics.length);
+        this.evaluated = ALL_EVALUATED;
+    }
+
+    /**
+     * @param medians   the medians, or null to take them from the statistics
+     * @param evaluator computes the statistics of a metric when first asked for
+     */
+    PeriodReport(LocalDate startDate, LocalDate endDate, double[] medians,
+                 Function<Metric, MetricStatistics> evaluator) {
         this.startDate = startDate;
         this.endDate = endDate;
-        this.stepsMedian = stepsMedian;
-        this.hoursMovedMedian = hoursMovedMedian;
-        this.kilocalsMedian = kilocalsMedian;
-        this.liquidLitersMedian = liquidLitersMedian;
+        this.medians = medians;
+        this.evaluator = evaluator;
     }
 
     static class PeriodReportBuilder {
@@ -90,18 +117,54 @@ public class PeriodReport {
     }
 
     public double getStepsMedian() {
-        return stepsMedian;
+        return median(Metric.STEPS);
     }
 
     public double getHoursMovedMedian() {
-        return hoursMovedMedian;
+        return median(Metric.HOURS);
     }
 
     public double getKilocalsMedian() {
-        return kilocalsMedian;
+        return median(Metric.KILOCALS);
     }
 
     public double getLiquidLitersMedian() {
-        return liquidLitersMedian;
+        return median(Metric.LITERS);
+    }
+
+    public MetricStatistics getStepsStatistics() {
+        return statistics(Metric.STEPS);
+    }
+
+    public MetricStatistics getHoursMovedStatistics() {
+        return statistics(Metric.HOURS);
+    }
+
+    public MetricStatistics getKilocalsStatistics() {
+        return statistics(Metric.KILOCALS);
+    }
+
+    public MetricStatistics getLiquidLitersStatistics() {
+        return statistics(Metric.LITERS);
+    }
+
+    private double median(Metric metric) {
+        return medians != null ? medians[metric.ordinal()] : statistics(metric).getMedian();
+    }
+
+    /**
+     * @return null for a report built from its medians alone
+     */
+    private MetricStatistics statistics(Metric metric) {
+        int bit = 1 << metric.ordinal();
+        if ((evaluated & bit) == 0) {
+            synchronized (this) {
+                if ((evaluated & bit) == 0) {
+                    statistics[metric.ordinal()] = evaluator.apply(metric);
+                    evaluated |= bit; // the volatile write publishes the statistics
+                }
+            }
+        }
+        return statistics[metric.ordinal()];
     }
 }
@@ -0,0 +1,148 @@
+package com.dy.health;
+
+/**
+ * Streaming quantile estimator with a relative error guarantee (DDSketch-style logarithmic buckets).
+ * Any quantile it reports is within {@code relativeError} of the exact value, while memory grows
+ * only with the logarithm of the value range, not with the number of values added.
+ */
+final class QuantileSketch implements MedianAccumulator {
+    private static final double MIN_INDEXABLE_VALUE = 1e-9;
+
+    private final double gamma;
+    private final double logGamma;
+    private final Buckets positive = new Buckets();
+    private final Buckets negative = new Buckets();
+    private long zeroCount;
+    private long count;
+
+    QuantileSketch(double relativeError) {
+        if (!(relativeError > 0 && relativeError < 1)) {
+            throw new IllegalArgumentException("Relative error must be within (0, 1): " + relativeError);
+        }
+        this.gamma = (1 + relativeError) / (1 - relativeError);
+        this.logGamma = Math.log(gamma);
+    }
+
+    @Override
+    public void add(double value) {
+        if (value > MIN_INDEXABLE_VALUE) {
+            positive.increment(index(value));
+        } else if (value < -MIN_INDEXABLE_VALUE) {
+            negative.increment(index(-value));
+        } else {
+            zeroCount++;
+        }
+        count++;
+    }
+
+    @Override
+    public void merge(MedianAccumulator accumulator) {
+        QuantileSketch other = (QuantileSketch) accumulator;
+        if (other.gamma != gamma) {
+            throw new IllegalArgumentException("Cannot merge sketches of different accuracy");
+        }
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    long count() {
+        return count;
+    }
+
+    @Override
+    public double median() {
+        if (count == 0) return 0;
+        long middle = count / 2;
+        if (count % 2 == 1) {
+            return valueAtRank(middle);
+        }
+        return (valueAtRank(middle - 1) + valueAtRank(middle)) / 2.0;
+    }
+
+    @Override
+    public double quantile(double quantile) {
+        if (count == 0) return 0;
+        double position = quantile * (count - 1);
+        long lower = (long) position;
+        double low = valueAtRank(lower);
+        return lower == position ? low : low + (position - lower) * (valueAtRank(lower + 1) - low);
+    }
+
+    private double valueAtRank(long rank) {
+        long seen = 0;
+        for (int i = negative.maxIndex(); i >= negative.minIndex(); i--) {
+            seen += negative.count(i);
+            if (seen > rank) return -value(i);
+        }
+        seen += zeroCount;
+        if (seen > rank) return 0;
+        for (int i = positive.minIndex(); i <= positive.maxIndex(); i++) {
+            seen += positive.count(i);
+            if (seen > rank) return value(i);
+        }
+        return value(positive.maxIndex());
+    }
+
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    private double value(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    private static final class Buckets {
+        private long[] counts = new long[0];
+        private int offset;
+        private int minIndex = Integer.MAX_VALUE;
+        private int maxIndex = Integer.MIN_VALUE;
+
+        void increment(int index) {
+            add(index, 1);
+        }
+
+        void merge(Buckets other) {
+            for (int i = other.minIndex; i <= other.maxIndex; i++) {
+                long count = other.count(i);
+                if (count != 0) add(i, count);
+            }
+        }
+
+        private void add(int index, long count) {
+            if (counts.length == 0) {
+                counts = new long[32];
+                offset = index - 16;
+            } else if (index < offset || index >= offset + counts.length) {
+                extendTo(index);
+            }
+            counts[index - offset] += count;
+            if (index < minIndex) minIndex = index;
+            if (index > maxIndex) maxIndex = index;
+        }
+
+        private void extendTo(int index) {
+            int newMin = Math.min(offset, index);
+            int newMax = Math.max(offset + counts.length - 1, index);
+            int length = Math.max(counts.length * 2, newMax - newMin + 1);
+            long[] extended = new long[length];
+            int newOffset = index < offset ? newMax - length + 1 : newMin;
+            System.arraycopy(counts, 0, extended, offset - newOffset, counts.length);
+            counts = extended;
+            offset = newOffset;
+        }
+
+        long count(int index) {
+            return counts[index - offset];
+        }
+
+        int minIndex() {
+            return minIndex;
+        }
+
+        int maxIndex() {
+            return maxIndex;
+        }
+    }
+}
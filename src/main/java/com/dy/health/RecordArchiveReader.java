@@ -0,0 +1,176 @@
+package com.dy.health;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Streams the setup and then the records out of an archive written by {@link RecordArchiveWriter},
+ * a batch at a time, holding no more than a fixed-size buffer and the batch.
+ */
+public final class RecordArchiveReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;
+    private final HealthServiceSetup setup;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private String[] names = new String[16];
+    private int nameCount;
+    private String[] units = new String[16];
+    private int unitCount;
+    private long previousEpochSecond;
+    private boolean ended;
+
+    public RecordArchiveReader(ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+        buffer.flip();
+        require(8 * 5 + 1);
+        if (buffer.getLong() != RecordArchiveWriter.MAGIC) {
+            throw new IOException("Not a health archive");
+        }
+        setup = new HealthServiceSetup()
+                .setMinStepsPerDay(buffer.getDouble())
+                .setMinHoursOfMovementPerDay(buffer.getDouble())
+                .setMinKilocalsPerDay(buffer.getDouble())
+                .setMinLitersPerDay(buffer.getDouble())
+                .setInstrumented(buffer.get() != 0)
+                .setOffHeapAfterDays((int) getVarLong())
+                .setReportCacheDays((int) getVarLong())
+                .setRawRecordDays((int) getVarLong())
+                .setRetentionDays((int) getVarLong());
+        int rangeCount = (int) getVarLong();
+        Map<String, TimeRange> namedTimeRanges = new HashMap<>();
+        for (int i = 0; i < rangeCount; i++) {
+            String name = getString();
+            LocalTime start = LocalTime.ofNanoOfDay(getVarLong());
+            namedTimeRanges.put(name, new TimeRange(start, LocalTime.ofNanoOfDay(getVarLong())));
+        }
+        setup.setNamedTimeRanges(namedTimeRanges);
+    }
+
+    public HealthServiceSetup getSetup() {
+        return setup;
+    }
+
+    /**
+     * Clears {@code batch} and fills it with up to {@code maxRecords} next records. Day summaries are
+     * skipped; {@link HealthService#importFrom} restores them.
+     *
+     * @return false once the archive has no records left, with the batch empty
+     */
+    public boolean read(RecordBatch batch, int maxRecords) throws IOException {
+        return read(batch, maxRecords, null);
+    }
+
+    /**
+     * Like {@link #read(RecordBatch, int)}, handing each day summary passed on the way to
+     * {@code summaries} with its totals, indexed by {@link Metric#ordinal()}, and its epoch day.
+     */
+    boolean read(RecordBatch batch, int maxRecords, ObjLongConsumer<double[]> summaries) throws IOException {
+        batch.clear();
+        while (!ended && batch.size() < maxRecords) {
+            require(1);
+            int tag = buffer.get() & 0xFF;
+            if (tag == RecordArchiveWriter.END) {
+                ended = true;
+                break;
+            }
+            if (tag == RecordArchiveWriter.SUMMARY) {
+                long epochDay = unzigzag(getVarLong());
+                double[] totals = new double[Metric.VALUES.length];
+                require(8 * totals.length);
+                for (int i = 0; i < totals.length; i++) {
+                    totals[i] = buffer.getDouble();
+                }
+                if (summaries != null) summaries.accept(totals, epochDay);
+                continue;
+            }
+            String name = getReference(true);
+            String measureUnit = getReference(false);
+            long epochSecond = previousEpochSecond + unzigzag(getVarLong());
+            int coding = tag >>> 2 & 3;
+            double quantity;
+            if (coding == RecordArchiveWriter.WHOLE) {
+                quantity = unzigzag(getVarLong());
+            } else if (coding == RecordArchiveWriter.THOUSANDTHS) {
+                quantity = unzigzag(getVarLong()) / 1000.0;
+            } else {
+                require(8);
+                quantity = buffer.getDouble();
+            }
+            int durationSeconds = (tag & RecordArchiveWriter.HAS_DURATION) != 0 ? (int) getVarLong() : 0;
+            batch.add((byte) ((tag & 3) - 1), name, measureUnit, quantity, epochSecond, durationSeconds);
+            previousEpochSecond = epochSecond;
+        }
+        return batch.size() > 0;
+    }
+
+    private String getReference(boolean name) throws IOException {
+        int code = (int) getVarLong() - 1;
+        if (code == Dictionary.ABSENT) return null;
+        int count = name ? nameCount : unitCount;
+        if (code < count) {
+            return name ? names[code] : units[code];
+        }
+        if (code > count) {
+            throw new IOException("Undefined " + (name ? "name" : "unit") + " code " + code);
+        }
+        String value = getString();
+        if (name) {
+            if (nameCount == names.length) names = Arrays.copyOf(names, nameCount * 2);
+            names[nameCount++] = value;
+        } else {
+            if (unitCount == units.length) units = Arrays.copyOf(units, unitCount * 2);
+            units[unitCount++] = value;
+        }
+        return value;
+    }
+
+    private String getString() throws IOException {
+        int length = (int) getVarLong();
+        require(length);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long getVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            require(1);
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static long unzigzag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    /**
+     * Makes sure {@code bytes} more bytes are buffered, reading from the channel as needed.
+     */
+    private void require(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) return;
+        buffer.compact();
+        if (buffer.capacity() < bytes) {
+            buffer.flip();
+            buffer = ByteBuffer.allocateDirect(bytes).put(buffer);
+        }
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Archive ends in the middle of a record");
+            }
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,194 @@
+package com.dy.health;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streams a {@link HealthService}'s setup and records into a compact binary archive, read back by
+ * {@link RecordArchiveReader}. Only a fixed-size buffer is held, so an archive of any size can be
+ * written while the records are walked.
+ * <pre>
+ * archive: magic(8) setup (record | summary)* 0
+ * setup:   minSteps minHours minKilocals minLiters (8 each) instrumented(1) offHeapAfterDays(varint)
+ *          reportCacheDays(varint) rawRecordDays(varint) retentionDays(varint)
+ *          rangeCount(varint) [name(string) startNanoOfDay(varint) endNanoOfDay(varint)]*
+ * record:  tag(1) name(ref) unit(ref) epochSecondDelta(zigzag varint) quantity [duration(varint)]
+ * tag:     type + 1 (bits 0-1), quantity coding (bits 2-3), has duration (bit 4)
+ * summary: 32(1) epochDay(zigzag varint) total(8) per metric
+ * ref:     varint 0 for none, else code + 1; the next unused code is followed by its string
+ * string:  length(varint) UTF-8 bytes
+ * </pre>
+ * Timestamps are deltas to the previous record, small for records written in time order. Quantities
+ * that are whole numbers or whole thousandths are written as zigzag varints, anything else as the raw
+ * double, so every quantity reads back exactly. A summary holds the totals of a day whose records
+ * were dropped by {@link HealthServiceSetup#setRawRecordDays retention}, as raw doubles.
+ */
+public final class RecordArchiveWriter implements Closeable {
+    static final long MAGIC = 0x484D415243480001L;
+    static final int END = 0;
+    static final int WHOLE = 0;
+    static final int THOUSANDTHS = 1;
+    static final int RAW = 2;
+    static final int HAS_DURATION = 1 << 4;
+    static final int SUMMARY = 1 << 5;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_RECORD_BYTES = 1 + 10 + 10 + 5;
+
+    private final WritableByteChannel channel;
+    private final Map<String, Integer> nameCodes = new HashMap<>();
+    private final Map<String, Integer> unitCodes = new HashMap<>();
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long previousEpochSecond;
+    private String previousName;
+    private int previousNameCode = Dictionary.ABSENT;
+    private String previousUnit;
+    private int previousUnitCode = Dictionary.ABSENT;
+    private boolean closed;
+
+    public RecordArchiveWriter(WritableByteChannel channel, HealthServiceSetup setup) throws IOException {
+        this.channel = channel;
+        buffer.putLong(MAGIC);
+        buffer.putDouble(setup.getMinStepsPerDay());
+        buffer.putDouble(setup.getMinHoursOfMovementPerDay());
+        buffer.putDouble(setup.getMinKilocalsPerDay());
+        buffer.putDouble(setup.getMinLitersPerDay());
+        buffer.put((byte) (setup.isInstrumented() ? 1 : 0));
+        putVarLong(setup.getOffHeapAfterDays());
+        putVarLong(setup.getReportCacheDays());
+        putVarLong(setup.getRawRecordDays());
+        putVarLong(setup.getRetentionDays());
+        putVarLong(setup.getNamedTimeRanges().size());
+        for (Map.Entry<String, TimeRange> range : setup.getNamedTimeRanges().entrySet()) {
+            putString(range.getKey());
+            ensure(20);
+            putVarLong(range.getValue().start().toNanoOfDay());
+            putVarLong(range.getValue().end().toNanoOfDay());
+        }
+    }
+
+    public void write(RecordBatch batch) throws IOException {
+        for (int i = 0; i < batch.size(); i++) {
+            write(batch.type(i), batch.name(i), batch.measureUnit(i), batch.quantity(i), batch.epochSecond(i),
+                    batch.durationSeconds(i));
+        }
+    }
+
+    void write(byte type, String name, String measureUnit, double quantity, long epochSecond,
+               int durationSeconds) throws IOException {
+        // names and units repeat from record to record, so skip the maps for repeats
+        int nameCode = name == previousName ? previousNameCode : codeOf(nameCodes, name);
+        int unitCode = measureUnit == previousUnit ? previousUnitCode : codeOf(unitCodes, measureUnit);
+        int coding;
+        double thousandths = quantity * 1000;
+        if (quantity == Math.rint(quantity) && Math.abs(quantity) < 1L << 53) {
+            coding = WHOLE;
+        } else if (thousandths == Math.rint(thousandths) && Math.abs(thousandths) < 1L << 53
+                && thousandths / 1000 == quantity) {
+            coding = THOUSANDTHS;
+        } else {
+            coding = RAW;
+        }
+        ensure(MAX_RECORD_BYTES);
+        buffer.put((byte) ((type + 1) | coding << 2 | (durationSeconds != 0 ? HAS_DURATION : 0)));
+        putReference(nameCode, nameCodes, name);
+        putReference(unitCode, unitCodes, measureUnit);
+        ensure(MAX_RECORD_BYTES);
+        putVarLong(zigzag(epochSecond - previousEpochSecond));
+        if (coding == WHOLE) {
+            putVarLong(zigzag((long) quantity));
+        } else if (coding == THOUSANDTHS) {
+            putVarLong(zigzag((long) thousandths));
+        } else {
+            buffer.putDouble(quantity);
+        }
+        if (durationSeconds != 0) {
+            putVarLong(durationSeconds & 0xFFFFFFFFL);
+        }
+        previousEpochSecond = epochSecond;
+        previousName = name;
+        previousNameCode = nameCode;
+        previousUnit = measureUnit;
+        previousUnitCode = unitCode;
+    }
+
+    /**
+     * Writes the totals of a summarized day, indexed by {@link Metric#ordinal()}.
+     */
+    void writeSummary(long epochDay, double[] totals) throws IOException {
+        ensure(1 + 10 + 8 * totals.length);
+        buffer.put((byte) SUMMARY);
+        putVarLong(zigzag(epochDay));
+        for (double total : totals) {
+            buffer.putDouble(total);
+        }
+    }
+
+    private static int codeOf(Map<String, Integer> codes, String value) {
+        if (value == null) return Dictionary.ABSENT;
+        Integer code = codes.get(value);
+        return code != null ? code : codes.size(); // defined as it is written
+    }
+
+    private void putReference(int code, Map<String, Integer> codes, String value) throws IOException {
+        ensure(5);
+        putVarLong(code + 1);
+        if (code == codes.size()) {
+            codes.put(value, code);
+            putString(value);
+        }
+    }
+
+    private void putString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensure(5 + bytes.length);
+        putVarLong(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long zigzag(long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocateDirect(bytes);
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Ends the archive and writes out what is buffered; the channel is left open.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        ensure(1);
+        buffer.put((byte) END);
+        flush();
+    }
+}
@@ -0,0 +1,166 @@
+package com.dy.health;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Buffer of drink, eat and move events for {@link HealthService#ingest(RecordBatch)}. Events are kept
+ * in primitive columns, so filling a batch of tens of thousands of events costs no per-event objects
+ * beyond the arguments themselves. A batch can be cleared and reused.
+ */
+public class RecordBatch {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private byte[] types;
+    private String[] names;
+    private String[] measureUnits;
+    private double[] quantities;
+    private long[] epochSeconds;
+    private int[] durationSeconds;
+    private int size;
+
+    public RecordBatch() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public RecordBatch(int expectedSize) {
+        int capacity = Math.max(expectedSize, 1);
+        types = new byte[capacity];
+        names = new String[capacity];
+        measureUnits = new String[capacity];
+        quantities = new double[capacity];
+        epochSeconds = new long[capacity];
+        durationSeconds = new int[capacity];
+    }
+
+    public RecordBatch drink(String drinkName, String measureUnit, double quantity, LocalDateTime dateTime) {
+        add(DayRecords.DRINK, drinkName, measureUnit, quantity, dateTime, 0);
+        return this;
+    }
+
+    public RecordBatch eat(String foodName, String measureUnit, double quantity, LocalDateTime dateTime) {
+        add(DayRecords.FOOD, foodName, measureUnit, quantity, dateTime, 0);
+        return this;
+    }
+
+    /**
+     * A move that crosses midnight is split into one event per day it touches, starting at the day's
+     * midnight, and the quantity is shared out in proportion to the time spent in each day. Times are
+     * wall-clock times, so a day with a clock change still counts as 24 hours.
+     */
+    public RecordBatch move(String measureUnit, double quantity, LocalDateTime moveStart, LocalDateTime moveEnd) {
+        if (moveStart.toLocalDate().isEqual(moveEnd.toLocalDate())) {
+            add(DayRecords.MOVE, null, measureUnit, quantity, moveStart,
+                    (int) Duration.between(moveStart, moveEnd).getSeconds());
+        } else if (moveEnd.isBefore(moveStart)) {
+            throw new IllegalArgumentException("Move ends before it starts: " + moveStart + " - " + moveEnd);
+        } else {
+            long startSecond = moveStart.toEpochSecond(ZoneOffset.UTC);
+            long endSecond = moveEnd.toEpochSecond(ZoneOffset.UTC);
+            double left = quantity;
+            for (long from = startSecond, to; from < endSecond; from = to) {
+                to = Math.min(endSecond, (Math.floorDiv(from, SECONDS_PER_DAY) + 1) * SECONDS_PER_DAY);
+                // the last day takes what is left, so the days add up to the quantity exactly
+                double share = to == endSecond ? left : quantity * (to - from) / (endSecond - startSecond);
+                add(DayRecords.MOVE, null, measureUnit, share, from, (int) (to - from));
+                left -= share;
+            }
+        }
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(measureUnits, 0, size, null);
+        size = 0;
+    }
+
+    private void add(byte type, String name, String measureUnit, double quantity,
+                     LocalDateTime dateTime, int duration) {
+        add(type, name, measureUnit, quantity, dateTime.toEpochSecond(ZoneOffset.UTC), duration);
+    }
+
+    void add(byte type, String name, String measureUnit, double quantity, long epochSecond, int duration) {
+        if (size == types.length) {
+            grow(size * 2);
+        }
+        types[size] = type;
+        names[size] = name;
+        measureUnits[size] = measureUnit;
+        quantities[size] = quantity;
+        epochSeconds[size] = epochSecond;
+        durationSeconds[size] = duration;
+        size++;
+    }
+
+    private void grow(int capacity) {
+        types = Arrays.copyOf(types, capacity);
+        names = Arrays.copyOf(names, capacity);
+        measureUnits = Arrays.copyOf(measureUnits, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        epochSeconds = Arrays.copyOf(epochSeconds, capacity);
+        durationSeconds = Arrays.copyOf(durationSeconds, capacity);
+    }
+
+    /**
+     * Batch positions ordered by day and, within a day, by position in the batch.
+     */
+    static int[] orderByDay(long[] epochDays, long firstDay, long lastDay) {
+        int size = epochDays.length;
+        int[] order = new int[size];
+        if (lastDay - firstDay < 4L * size) {
+            // counting sort, linear when the batch covers a dense range of days
+            int[] starts = new int[(int) (lastDay - firstDay) + 2];
+            for (long epochDay : epochDays) {
+                starts[(int) (epochDay - firstDay) + 1]++;
+            }
+            for (int day = 1; day < starts.length; day++) {
+                starts[day] += starts[day - 1];
+            }
+            for (int i = 0; i < size; i++) {
+                order[starts[(int) (epochDays[i] - firstDay)]++] = i;
+            }
+        } else {
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = (epochDays[i] - firstDay) << 32 | i;
+            }
+            Arrays.sort(keys);
+            for (int i = 0; i < size; i++) {
+                order[i] = (int) keys[i];
+            }
+        }
+        return order;
+    }
+
+    byte type(int index) {
+        return types[index];
+    }
+
+    String name(int index) {
+        return names[index];
+    }
+
+    String measureUnit(int index) {
+        return measureUnits[index];
+    }
+
+    double quantity(int index) {
+        return quantities[index];
+    }
+
+    long epochSecond(int index) {
+        return epochSeconds[index];
+    }
+
+    int durationSeconds(int index) {
+        return durationSeconds[index];
+    }
+}
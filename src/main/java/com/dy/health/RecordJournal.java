@@ -0,0 +1,173 @@
+package com.dy.health;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+
+/**
+ * Durable log of every record of a {@link HealthService}. Each drink, eat and move is appended as a
+ * fixed-width binary entry to a memory-mapped journal file; {@link #compact(LocalDate)} folds the days
+ * before a cutoff into a snapshot file, ordered by day. A service constructed with a journal replays
+ * the snapshot and then the journal before accepting new records.
+ * <p>
+ * Durability is batched: the mapping is forced to disk after every {@code syncEvery} appends and on
+ * {@link #sync()} or {@link #close()}. Entries written after the last sync may be lost on a crash,
+ * and a partially written last entry is detected and dropped on the next open.
+ */
+public class RecordJournal implements Closeable {
+    public static final int DEFAULT_SYNC_EVERY = 256;
+
+    private static final String JOURNAL = "journal-";
+    private static final String SNAPSHOT = "snapshot-";
+    private static final String SUFFIX = ".bin";
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private final Path directory;
+    private final int syncEvery;
+    private int generation;
+    private JournalFile journal;
+
+    private RecordJournal(Path directory, int syncEvery) throws IOException {
+        this.directory = directory;
+        this.syncEvery = syncEvery;
+        this.generation = latestGeneration(directory);
+        deleteOtherGenerations();
+        this.journal = JournalFile.open(journalPath(generation), syncEvery);
+    }
+
+    /**
+     * Compaction writes generation n + 1 next to generation n; the new snapshot appearing is the commit
+     * point, so the latest generation that has a snapshot (or generation 0) is the current one.
+     */
+    private static int latestGeneration(Path directory) throws IOException {
+        int latest = 0;
+        try (DirectoryStream<Path> snapshots = Files.newDirectoryStream(directory, SNAPSHOT + "*" + SUFFIX)) {
+            for (Path snapshot : snapshots) {
+                String fileName = snapshot.getFileName().toString();
+                latest = Math.max(latest, Integer.parseInt(
+                        fileName.substring(SNAPSHOT.length(), fileName.length() - SUFFIX.length())));
+            }
+        }
+        return latest;
+    }
+
+    private void deleteOtherGenerations() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                "{" + JOURNAL + "," + SNAPSHOT + "}*")) {
+            for (Path file : files) {
+                if (!file.equals(journalPath(generation)) && !file.equals(snapshotPath(generation))) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private Path journalPath(int generation) {
+        return directory.resolve(JOURNAL + generation + SUFFIX);
+    }
+
+    private Path snapshotPath(int generation) {
+        return directory.resolve(SNAPSHOT + generation + SUFFIX);
+    }
+
+    public static RecordJournal open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SYNC_EVERY);
+    }
+
+    /**
+     * @param syncEvery number of appends between forced writes to disk; 0 leaves it to the OS
+     */
+    public static RecordJournal open(Path directory, int syncEvery) throws IOException {
+        Files.createDirectories(directory);
+        return new RecordJournal(directory, syncEvery);
+    }
+
+    synchronized void append(byte type, String name, String measureUnit, double quantity, long epochSecond,
+                             int durationSeconds) {
+        try {
+            journal.append(type, name, measureUnit, quantity, epochSecond, durationSeconds);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized void append(RecordBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            append(batch.type(i), batch.name(i), batch.measureUnit(i), batch.quantity(i),
+                    batch.epochSecond(i), batch.durationSeconds(i));
+        }
+    }
+
+    /**
+     * Everything recorded so far: the snapshot followed by the journal.
+     */
+    synchronized RecordBatch replay() throws IOException {
+        RecordBatch batch = new RecordBatch(journal.length() / JournalFile.ENTRY_SIZE);
+        Path snapshotPath = snapshotPath(generation);
+        if (Files.exists(snapshotPath)) {
+            try (JournalFile snapshot = JournalFile.open(snapshotPath, 0)) {
+                snapshot.readInto(batch);
+            }
+        }
+        journal.readInto(batch);
+        return batch;
+    }
+
+    /**
+     * Moves the records of all days before {@code before} from the journal into the snapshot, which is
+     * rewritten ordered by day. A crash during compaction leaves either the old or the new pair of files.
+     */
+    public synchronized void compact(LocalDate before) throws IOException {
+        RecordBatch all = replay();
+        int size = all.size();
+        long cutoff = before.toEpochDay();
+        long[] epochDays = new long[size];
+        long firstDay = Long.MAX_VALUE;
+        long lastDay = Long.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            epochDays[i] = Math.floorDiv(all.epochSecond(i), SECONDS_PER_DAY);
+            firstDay = Math.min(firstDay, epochDays[i]);
+            lastDay = Math.max(lastDay, epochDays[i]);
+        }
+        int[] order = size == 0 ? new int[0] : RecordBatch.orderByDay(epochDays, firstDay, lastDay);
+        int next = generation + 1;
+        Path newJournal = journalPath(next);
+        Path newSnapshot = directory.resolve(SNAPSHOT + next + ".tmp");
+        Files.deleteIfExists(newJournal);
+        Files.deleteIfExists(newSnapshot);
+        try (JournalFile rest = JournalFile.open(newJournal, 0)) {
+            for (int i = 0; i < size; i++) {
+                if (epochDays[i] >= cutoff) copy(all, i, rest);
+            }
+        }
+        try (JournalFile snapshot = JournalFile.open(newSnapshot, 0)) {
+            for (int i : order) {
+                if (epochDays[i] < cutoff) copy(all, i, snapshot);
+            }
+        }
+        journal.close();
+        Files.move(newSnapshot, snapshotPath(next), StandardCopyOption.ATOMIC_MOVE);
+        generation = next;
+        deleteOtherGenerations();
+        journal = JournalFile.open(newJournal, syncEvery);
+    }
+
+    private static void copy(RecordBatch batch, int i, JournalFile target) throws IOException {
+        target.append(batch.type(i), batch.name(i), batch.measureUnit(i), batch.quantity(i),
+                batch.epochSecond(i), batch.durationSeconds(i));
+    }
+
+    public synchronized void sync() {
+        journal.sync();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        journal.close();
+    }
+}
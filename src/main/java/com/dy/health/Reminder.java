@@ -0,0 +1,57 @@
+package com.dy.health;
+
+import java.time.LocalDateTime;
+
+/**
+ * A user's pending daily reminder in a {@link ReminderScheduler}.
+ */
+public final class Reminder extends TimingWheel.Timeout {
+    private final ReminderScheduler scheduler;
+    private final String userId;
+    private final HealthService service;
+    private final ReminderRule rule;
+    private volatile LocalDateTime next;
+    private boolean cancelled;
+
+    Reminder(ReminderScheduler scheduler, String userId, HealthService service, ReminderRule rule) {
+        this.scheduler = scheduler;
+        this.userId = userId;
+        this.service = service;
+        this.rule = rule;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public ReminderRule getRule() {
+        return rule;
+    }
+
+    /**
+     * When the reminder fires next, or fired last while it is being delivered.
+     */
+    public LocalDateTime getNext() {
+        return next;
+    }
+
+    public void cancel() {
+        scheduler.cancel(this);
+    }
+
+    HealthService service() {
+        return service;
+    }
+
+    void setNext(LocalDateTime next) {
+        this.next = next;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    void markCancelled() {
+        cancelled = true;
+    }
+}
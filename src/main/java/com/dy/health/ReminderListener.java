@@ -0,0 +1,9 @@
+package com.dy.health;
+
+public interface ReminderListener {
+
+    /**
+     * Called on the thread running {@link ReminderScheduler#runDue()} when a reminder fires.
+     */
+    void remind(Reminder reminder, UnfulfilledDayNormReport left);
+}
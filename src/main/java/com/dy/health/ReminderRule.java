@@ -0,0 +1,96 @@
+package com.dy.health;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A daily reminder to drink, eat or move at a time of day. It only fires while the matching norm is
+ * unfulfilled; a meal reminder also stays quiet once anything was eaten within the meal's named
+ * {@link TimeRange}.
+ */
+public final class ReminderRule {
+
+    public enum Kind {DRINK, EAT, MOVE}
+
+    private static final String KILO_CALORIE = "kilocal";
+
+    private final Kind kind;
+    private final LocalTime time;
+    private final String meal;
+
+    private ReminderRule(Kind kind, LocalTime time, String meal) {
+        this.kind = Objects.requireNonNull(kind);
+        this.time = Objects.requireNonNull(time);
+        this.meal = meal;
+    }
+
+    public static ReminderRule drink(LocalTime time) {
+        return new ReminderRule(Kind.DRINK, time, null);
+    }
+
+    /**
+     * @param meal name of the meal's time range in the {@link HealthServiceSetup}
+     */
+    public static ReminderRule eat(String meal, LocalTime time) {
+        return new ReminderRule(Kind.EAT, time, meal);
+    }
+
+    public static ReminderRule move(LocalTime time) {
+        return new ReminderRule(Kind.MOVE, time, null);
+    }
+
+    /**
+     * Water at 8:00, breakfast at 8:30, water at 10:00 and lunch at 11:30.
+     */
+    public static List<ReminderRule> defaultSchedule() {
+        return Arrays.asList(
+                drink(LocalTime.of(8, 0)),
+                eat("breakfast", LocalTime.of(8, 30)),
+                drink(LocalTime.of(10, 0)),
+                eat("lunch", LocalTime.of(11, 30)));
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public LocalTime getTime() {
+        return time;
+    }
+
+    public String getMeal() {
+        return meal;
+    }
+
+    boolean isDue(HealthService service, UnfulfilledDayNormReport left, LocalDate date) {
+        switch (kind) {
+            case DRINK:
+                return left.getLiquidLitersLeft() > 0;
+            case EAT:
+                return left.getKiloCalsLeft() > 0 && (meal == null || service.eaten(meal, KILO_CALORIE, date) == 0);
+            default:
+                return left.getStepsLeft() > 0 || left.getHoursToMoveLeft() > 0;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ReminderRule that = (ReminderRule) o;
+        return kind == that.kind && time.equals(that.time) && Objects.equals(meal, that.meal);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, time, meal);
+    }
+
+    @Override
+    public String toString() {
+        return kind + (meal == null ? "" : " " + meal) + " at " + time;
+    }
+}
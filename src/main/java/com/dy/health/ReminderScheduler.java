@@ -0,0 +1,109 @@
+package com.dy.health;
+
+import java.time.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fires users' daily {@link ReminderRule}s at their time of day in the clock's zone, as long as the
+ * user's {@link HealthService} still has the matching norm unfulfilled. Pending reminders live in a
+ * {@link TimingWheel} with one-second ticks, so scheduling and cancelling stay constant time with
+ * millions of reminders pending. Nothing runs by itself: {@link #runDue()} fires whatever came due
+ * by the clock, called either directly against a fixed clock or every second after {@link #start}.
+ */
+public class ReminderScheduler {
+    private final Clock clock;
+    private final ReminderListener listener;
+    private final TimingWheel<Reminder> wheel;
+
+    public ReminderScheduler(Clock clock, ReminderListener listener) {
+        this.clock = clock;
+        this.listener = listener;
+        this.wheel = new TimingWheel<>(clock.instant().getEpochSecond());
+    }
+
+    public Reminder schedule(String userId, HealthService service, ReminderRule rule) {
+        Reminder reminder = new Reminder(this, userId, service, rule);
+        LocalDateTime now = LocalDateTime.now(clock);
+        synchronized (this) {
+            add(reminder, now);
+        }
+        return reminder;
+    }
+
+    public List<Reminder> schedule(String userId, HealthService service, List<ReminderRule> rules) {
+        List<Reminder> reminders = new ArrayList<>(rules.size());
+        for (ReminderRule rule : rules) {
+            reminders.add(schedule(userId, service, rule));
+        }
+        return reminders;
+    }
+
+    synchronized void cancel(Reminder reminder) {
+        reminder.markCancelled();
+        wheel.cancel(reminder);
+    }
+
+    public synchronized int pendingCount() {
+        return wheel.size();
+    }
+
+    /**
+     * Runs {@link #runDue()} every second on {@code executor} until the returned future is cancelled.
+     */
+    public ScheduledFuture<?> start(ScheduledExecutorService executor) {
+        return executor.scheduleAtFixedRate(this::runDue, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Evaluates every reminder that came due by the clock, notifies the listener of those whose norm
+     * is still unfulfilled and schedules each again for its next day.
+     *
+     * @return the number of reminders the listener was notified of
+     */
+    public int runDue() {
+        Instant instant = clock.instant();
+        List<Reminder> due = new ArrayList<>();
+        synchronized (this) {
+            wheel.advance(instant.getEpochSecond(), due);
+        }
+        LocalDateTime now = LocalDateTime.ofInstant(instant, clock.getZone());
+        int fired = 0;
+        for (Reminder reminder : due) {
+            if (fire(reminder)) fired++;
+            synchronized (this) {
+                if (!reminder.isCancelled()) add(reminder, now);
+            }
+        }
+        return fired;
+    }
+
+    private boolean fire(Reminder reminder) {
+        LocalDate date = reminder.getNext().toLocalDate();
+        HealthService service = reminder.service();
+        UnfulfilledDayNormReport left;
+        try {
+            left = service.normsLeft(date);
+            if (!reminder.getRule().isDue(service, left, date)) return false;
+        } catch (IllegalStateException e) {
+            return false; // a day with unconvertible records cannot tell what is left
+        }
+        listener.remind(reminder, left);
+        return true;
+    }
+
+    /**
+     * Queues the reminder for the first time of its rule after {@code now}.
+     */
+    private void add(Reminder reminder, LocalDateTime now) {
+        LocalDateTime next = now.toLocalDate().atTime(reminder.getRule().getTime());
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        reminder.setNext(next);
+        wheel.add(reminder, next.atZone(clock.getZone()).toEpochSecond());
+    }
+}
@@ -0,0 +1,153 @@
+package com.dy.health;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Least recently used cache of computed reports, bounded by weight: a report weighs the number of
+ * days it covers. Every cached report is indexed under each of its days, so a write to a day drops
+ * exactly the reports covering it and nothing else. A report whose days are written to while it is
+ * being computed is returned but not cached. A cache of weight 0 computes every report.
+ */
+final class ReportCache {
+    static final byte DAY = 0;
+    static final byte PERIOD = 1;
+    static final byte LAZY_PERIOD = 2;
+
+    private final long maxWeight;
+    private final LinkedHashMap<Key, Object> reports = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Long, List<Key>> keysByDay = new HashMap<>();
+    private final List<Key> computing = new ArrayList<>();
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    ReportCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * The cached report for {@code key}, or the one {@code compute} returns.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(Key key, Supplier<T> compute) {
+        if (maxWeight == 0) return compute.get();
+        synchronized (this) {
+            Object report = reports.get(key);
+            if (report != null) {
+                hits++;
+                return (T) report;
+            }
+            misses++;
+            key = new Key(key); // tracks its own staleness while being computed
+            computing.add(key);
+        }
+        T report = null;
+        try {
+            report = compute.get();
+            return report;
+        } finally {
+            synchronized (this) {
+                for (Iterator<Key> i = computing.iterator(); i.hasNext(); ) {
+                    if (i.next() == key) { // not an equal key another thread is computing
+                        i.remove();
+                        break;
+                    }
+                }
+                if (report != null && !key.stale) put(key, report);
+            }
+        }
+    }
+
+    private void put(Key key, Object report) {
+        long keyWeight = key.weight();
+        if (keyWeight > maxWeight || reports.containsKey(key)) return;
+        reports.put(key, report);
+        weight += keyWeight;
+        for (long day = key.startDay; day <= key.endDay; day++) {
+            keysByDay.computeIfAbsent(day, d -> new ArrayList<>(2)).add(key);
+        }
+        Iterator<Key> eldest = reports.keySet().iterator();
+        while (weight > maxWeight) {
+            Key evicted = eldest.next();
+            eldest.remove();
+            unindex(evicted);
+            evictions++;
+        }
+    }
+
+    /**
+     * Drops every report covering {@code epochDay}; called after each write to it.
+     */
+    void invalidate(long epochDay) {
+        if (maxWeight == 0) return;
+        synchronized (this) {
+            for (Key key : computing) {
+                if (key.covers(epochDay)) key.stale = true;
+            }
+            List<Key> keys = keysByDay.get(epochDay);
+            if (keys == null) return;
+            for (Key key : keys.toArray(new Key[0])) {
+                reports.remove(key);
+                unindex(key);
+                invalidations++;
+            }
+        }
+    }
+
+    private void unindex(Key key) {
+        weight -= key.weight();
+        for (long day = key.startDay; day <= key.endDay; day++) {
+            List<Key> keys = keysByDay.get(day);
+            keys.remove(key);
+            if (keys.isEmpty()) keysByDay.remove(day);
+        }
+    }
+
+    synchronized ReportCacheStatistics statistics() {
+        return new ReportCacheStatistics(hits, misses, evictions, invalidations, reports.size(), weight);
+    }
+
+    static final class Key {
+        private final byte kind;
+        private final long startDay;
+        private final long endDay;
+        private final double relativeError;
+        private boolean stale;
+
+        Key(byte kind, long startDay, long endDay, double relativeError) {
+            this.kind = kind;
+            this.startDay = startDay;
+            this.endDay = endDay;
+            this.relativeError = relativeError;
+        }
+
+        private Key(Key other) {
+            this(other.kind, other.startDay, other.endDay, other.relativeError);
+        }
+
+        long weight() {
+            return Math.max(1, endDay - startDay + 1);
+        }
+
+        boolean covers(long epochDay) {
+            return epochDay >= startDay && epochDay <= endDay;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key that = (Key) o;
+            return kind == that.kind && startDay == that.startDay && endDay == that.endDay
+                    && Double.compare(relativeError, that.relativeError) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, startDay, endDay, relativeError);
+        }
+    }
+}
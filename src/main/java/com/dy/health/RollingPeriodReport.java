@@ -0,0 +1,145 @@
+package com.dy.health;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+
+/**
+ * A {@link PeriodReport} over the last few days that slides forward instead of being recomputed.
+ * Every metric's daily totals of the window are kept in a {@link SlidingMedian}: moving the window by
+ * a day swaps the oldest day's totals for the newest ones, and a record that arrives for a day inside
+ * the window swaps that day's totals for its new ones, each in O(log n) of the window length.
+ * Created by {@link HealthService#rollingPeriodReport(LocalDate, int)}; {@link #close()} stops it
+ * from following the service's records.
+ */
+public final class RollingPeriodReport implements AutoCloseable {
+    private final HealthService service;
+    private final int days;
+    private final double[] totals;
+    private final SlidingMedian[] medians = new SlidingMedian[DayRollups.METRICS];
+    private final double[] day = new double[DayRollups.METRICS];
+    private final BitSet unconvertible = new BitSet(); // ring positions of days with unconvertible records
+    private long endDay;
+
+    RollingPeriodReport(HealthService service, LocalDate endDate, int days) {
+        if (days < 1) {
+            throw new IllegalArgumentException("A window needs at least one day: " + days);
+        }
+        this.service = service;
+        this.days = days;
+        this.totals = new double[days * DayRollups.METRICS];
+        this.endDay = endDate.toEpochDay();
+        for (int metric = 0; metric < medians.length; metric++) {
+            medians[metric] = new SlidingMedian();
+            for (int i = 0; i < days; i++) {
+                medians[metric].add(0); // what the ring holds until refreshed
+            }
+        }
+    }
+
+    /**
+     * Reads every day of the window, once the report follows the service's records so that none
+     * recorded meanwhile is missed.
+     */
+    synchronized void refresh() {
+        for (long epochDay = endDay - days + 1; epochDay <= endDay; epochDay++) {
+            replace(epochDay);
+        }
+    }
+
+    public synchronized LocalDate getStartDate() {
+        return LocalDate.ofEpochDay(endDay - days + 1);
+    }
+
+    public synchronized LocalDate getEndDate() {
+        return LocalDate.ofEpochDay(endDay);
+    }
+
+    /**
+     * @throws IllegalStateException if a day of the window has records in units that do not convert,
+     *                               as {@link HealthService#getPeriodReport} would
+     */
+    public synchronized PeriodReport getReport() {
+        if (!unconvertible.isEmpty()) {
+            throw new IllegalStateException("Records of " + getStartDate() + " to " + getEndDate()
+                    + " cannot be converted");
+        }
+        double[] current = new double[medians.length];
+        for (int metric = 0; metric < medians.length; metric++) {
+            current[metric] = medians[metric].median();
+        }
+        double[] window = totals.clone(); // the further statistics are computed from it when asked for
+        return new PeriodReport(getStartDate(), getEndDate(), current, metric -> {
+            MetricAccumulator accumulator = new MetricAccumulator(MedianMode.exact(), days, service.norm(metric));
+            for (int offset = metric.ordinal(); offset < window.length; offset += DayRollups.METRICS) {
+                accumulator.add(window[offset]);
+            }
+            return accumulator.statistics();
+        });
+    }
+
+    /**
+     * Slides the window forward by one day.
+     */
+    public synchronized void advance() {
+        endDay++;
+        replace(endDay);
+    }
+
+    /**
+     * Slides the window forward until it ends on {@code endDate}, day by day.
+     */
+    public synchronized void advanceTo(LocalDate endDate) {
+        long target = endDate.toEpochDay();
+        if (target < endDay) {
+            throw new IllegalArgumentException("Cannot slide back from " + getEndDate() + " to " + endDate);
+        }
+        // beyond a full window every day is replaced anyway
+        endDay = Math.max(endDay, target - days);
+        while (endDay < target) {
+            endDay++;
+            replace(endDay);
+        }
+    }
+
+    /**
+     * Takes in the current totals of {@code date} if it lies within the window.
+     */
+    synchronized void changed(LocalDate date) {
+        long epochDay = date.toEpochDay();
+        if (epochDay > endDay - days && epochDay <= endDay) {
+            replace(epochDay);
+        }
+    }
+
+    /**
+     * Swaps the totals held at the ring position of {@code epochDay} for that day's current totals.
+     */
+    private void replace(long epochDay) {
+        int offset = offsetOf(epochDay);
+        try {
+            service.readTotals(epochDay, 1, day);
+        } catch (IllegalStateException e) {
+            unconvertible.set(offset / DayRollups.METRICS); // reported on the next getReport, not to the writer
+            return;
+        }
+        unconvertible.clear(offset / DayRollups.METRICS);
+        for (int metric = 0; metric < medians.length; metric++) {
+            double current = day[metric];
+            double previous = totals[offset + metric];
+            if (current != previous) {
+                medians[metric].remove(previous);
+                medians[metric].add(current);
+                totals[offset + metric] = current;
+            }
+        }
+    }
+
+    private int offsetOf(long epochDay) {
+        return (int) Math.floorMod(epochDay, (long) days) * DayRollups.METRICS;
+    }
+
+    @Override
+    public void close() {
+        service.stopRolling(this);
+    }
+}
@@ -0,0 +1,81 @@
+package com.dy.health;
+
+import java.util.TreeMap;
+
+/**
+ * Median of a multiset that values are added to and removed from in O(log n). The lower half and
+ * the upper half are kept as two counted tree maps, used like a max-heap and a min-heap that can
+ * also drop any value; the lower half holds the extra value when the size is odd.
+ */
+final class SlidingMedian {
+    private final TreeMap<Double, Integer> lower = new TreeMap<>();
+    private final TreeMap<Double, Integer> upper = new TreeMap<>();
+    private int lowerSize;
+    private int upperSize;
+
+    void add(double value) {
+        if (lowerSize == 0 || value <= lower.lastKey()) {
+            increment(lower, value);
+            lowerSize++;
+        } else {
+            increment(upper, value);
+            upperSize++;
+        }
+        rebalance();
+    }
+
+    void remove(double value) {
+        if (lowerSize > 0 && value <= lower.lastKey()) {
+            if (!decrement(lower, value)) throw new IllegalArgumentException("Not a value: " + value);
+            lowerSize--;
+        } else {
+            if (!decrement(upper, value)) throw new IllegalArgumentException("Not a value: " + value);
+            upperSize--;
+        }
+        rebalance();
+    }
+
+    int size() {
+        return lowerSize + upperSize;
+    }
+
+    /**
+     * The same median {@link ExactMedian} selects for these values.
+     */
+    double median() {
+        if (lowerSize == 0) return 0;
+        if (lowerSize > upperSize) return lower.lastKey();
+        return (lower.lastKey() + upper.firstKey()) / 2.0;
+    }
+
+    private void rebalance() {
+        if (lowerSize > upperSize + 1) {
+            double value = lower.lastKey();
+            decrement(lower, value);
+            increment(upper, value);
+            lowerSize--;
+            upperSize++;
+        } else if (upperSize > lowerSize) {
+            double value = upper.firstKey();
+            decrement(upper, value);
+            increment(lower, value);
+            upperSize--;
+            lowerSize++;
+        }
+    }
+
+    private static void increment(TreeMap<Double, Integer> half, double value) {
+        half.merge(value, 1, Integer::sum);
+    }
+
+    private static boolean decrement(TreeMap<Double, Integer> half, double value) {
+        Integer count = half.get(value);
+        if (count == null) return false;
+        if (count == 1) {
+            half.remove(value);
+        } else {
+            half.put(value, count - 1);
+        }
+        return true;
+    }
+}
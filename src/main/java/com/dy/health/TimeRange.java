@@ -5,17 +5,54 @@ import java.time.LocalTime;
 public final class TimeRange {
     private final LocalTime start;
     private final LocalTime end;
+    private final int startSecond;
+    private final int endSecond;
 
-    TimeRange(LocalTime startExclusive, LocalTime endInclusive) {
+    public TimeRange(LocalTime startExclusive, LocalTime endInclusive) {
         this.start = startExclusive;
         this.end = endInclusive;
+        this.startSecond = startExclusive.toSecondOfDay();
+        this.endSecond = endInclusive.toSecondOfDay();
     }
 
     public boolean isWithinTimeRange(LocalTime time) {
         return isTimeRangeUnbound() || time.isAfter(start) && (time.isBefore(end) || time.equals(end));
     }
 
-    private boolean isTimeRangeUnbound() {
+    boolean isWithinTimeRange(int secondOfDay) {
+        return isTimeRangeUnbound() || secondOfDay > startSecond && secondOfDay <= endSecond;
+    }
+
+    LocalTime start() {
+        return start;
+    }
+
+    LocalTime end() {
+        return end;
+    }
+
+    int startSecond() {
+        return startSecond;
+    }
+
+    int endSecond() {
+        return endSecond;
+    }
+
+    boolean isTimeRangeUnbound() {
         return start.equals(end);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TimeRange timeRange = (TimeRange) o;
+        return start.equals(timeRange.start) && end.equals(timeRange.end);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * start.hashCode() + end.hashCode();
+    }
 }
@@ -0,0 +1,148 @@
+package com.dy.health;
+
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel over whole ticks. Each of the {@link #LEVELS} wheels has 64 slots, and a
+ * slot of level {@code l} spans 64<sup>l</sup> ticks, so 64<sup>4</sup> ticks (194 days of seconds)
+ * are covered before deadlines get parked in the last slot. Timeouts sit in intrusive doubly linked
+ * slot lists: adding and cancelling are constant time whatever the number pending, and advancing
+ * only touches the slots that come due, moving a higher level's slot down as the lower level wraps.
+ * Not thread-safe.
+ */
+final class TimingWheel<T extends TimingWheel.Timeout> {
+    static final int LEVELS = 4;
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+
+    /**
+     * A pending timeout; subclasses carry what is due.
+     */
+    static class Timeout {
+        private long deadline;
+        private Timeout previous;
+        private Timeout next;
+
+        long deadline() {
+            return deadline;
+        }
+
+        boolean isPending() {
+            return previous != null;
+        }
+    }
+
+    private final Timeout[] slots = new Timeout[LEVELS * SLOTS];
+    private final Timeout expired = sentinel();
+    private long currentTick;
+    private int size;
+
+    TimingWheel(long currentTick) {
+        this.currentTick = currentTick;
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = sentinel();
+        }
+    }
+
+    private static Timeout sentinel() {
+        Timeout sentinel = new Timeout();
+        sentinel.previous = sentinel;
+        sentinel.next = sentinel;
+        return sentinel;
+    }
+
+    long currentTick() {
+        return currentTick;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void add(T timeout, long deadline) {
+        if (timeout.isPending()) {
+            throw new IllegalStateException("Timeout is already pending");
+        }
+        ((Timeout) timeout).deadline = deadline;
+        place(timeout);
+        size++;
+    }
+
+    void cancel(T timeout) {
+        if (timeout.isPending()) {
+            unlink(timeout);
+            size--;
+        }
+    }
+
+    private void place(Timeout timeout) {
+        long delay = timeout.deadline - currentTick;
+        if (delay <= 0) {
+            link(expired, timeout);
+            return;
+        }
+        int level = Math.min((63 - Long.numberOfLeadingZeros(delay)) / SLOT_BITS, LEVELS - 1);
+        long deadline = delay >>> (SLOT_BITS * LEVELS) == 0 ? timeout.deadline
+                : currentTick + ((1L << (SLOT_BITS * LEVELS)) - 1); // too far ahead: park in the last slot
+        link(slots[level * SLOTS + ((int) (deadline >>> (SLOT_BITS * level)) & MASK)], timeout);
+    }
+
+    /**
+     * Moves the wheel to {@code tick} and hands every timeout due by then to {@code due}, in no
+     * particular order.
+     */
+    void advance(long tick, List<T> due) {
+        int before = due.size();
+        drain(expired, due);
+        while (currentTick < tick) {
+            if (size == due.size() - before) {
+                currentTick = tick; // nothing left to find on the way
+                break;
+            }
+            currentTick++;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(slots[level * SLOTS + ((int) (currentTick >>> (SLOT_BITS * level)) & MASK)]);
+                }
+            }
+            drain(slots[(int) currentTick & MASK], due);
+            drain(expired, due);
+        }
+        size -= due.size() - before;
+    }
+
+    private void cascade(Timeout slot) {
+        for (Timeout timeout = slot.next; timeout != slot; ) {
+            Timeout next = timeout.next;
+            unlink(timeout);
+            place(timeout);
+            timeout = next;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void drain(Timeout slot, List<T> due) {
+        for (Timeout timeout = slot.next; timeout != slot; ) {
+            Timeout next = timeout.next;
+            unlink(timeout);
+            due.add((T) timeout);
+            timeout = next;
+        }
+    }
+
+    private static void link(Timeout slot, Timeout timeout) {
+        timeout.previous = slot.previous;
+        timeout.next = slot;
+        slot.previous.next = timeout;
+        slot.previous = timeout;
+    }
+
+    private static void unlink(Timeout timeout) {
+        timeout.previous.next = timeout.next;
+        timeout.next.previous = timeout.previous;
+        timeout.previous = null;
+        timeout.next = null;
+    }
+}
@@ -0,0 +1,89 @@
+package com.dy.health;
+
+/**
+ * Measure units the service converts between. Records keep the unit as a dictionary code, and the
+ * known units are interned first, so a code below {@link #COUNT} is the unit's ordinal and a
+ * conversion is one lookup in {@link #FACTORS}. Any other unit string is stored as is and only
+ * matches itself.
+ */
+enum Unit {
+    LITER(Dimension.VOLUME, 1, "liter"),
+    MILLILITER(Dimension.VOLUME, 0.001, "milliliter", "ml"),
+    GLASS(Dimension.VOLUME, 0.25, "glass"),
+    CUP(Dimension.VOLUME, 0.2365882365, "cup"),
+    OUNCE(Dimension.VOLUME, 0.0295735295625, "ounce", "oz"),
+    KILOCALORIE(Dimension.ENERGY, 1, "kilocal"),
+    KILOJOULE(Dimension.ENERGY, 1 / 4.184, "kilojoule", "kJ"),
+    STEP(Dimension.STEPS, 1, "step"),
+    HOUR(Dimension.TIME, 1, "hour"),
+    MINUTE(Dimension.TIME, 1 / 60.0, "minute", "min"),
+    SECOND(Dimension.TIME, 1 / 3600.0, "second"),
+    KILOMETER(Dimension.DISTANCE, 1, "kilometer", "km"),
+    METER(Dimension.DISTANCE, 0.001, "meter"),
+    MILE(Dimension.DISTANCE, 1.609344, "mile");
+
+    enum Dimension {VOLUME, ENERGY, STEPS, TIME, DISTANCE}
+
+    static final Unit[] VALUES = values();
+    static final int COUNT = VALUES.length;
+
+    /**
+     * Factor from unit {@code from} into unit {@code to} at {@code from * COUNT + to}, NaN across
+     * dimensions.
+     */
+    private static final double[] FACTORS = new double[COUNT * COUNT];
+
+    static {
+        for (Unit from : VALUES) {
+            for (Unit to : VALUES) {
+                FACTORS[from.ordinal() * COUNT + to.ordinal()] = from.dimension == to.dimension
+                        ? (from == to ? 1 : from.inBaseUnits / to.inBaseUnits) : Double.NaN;
+            }
+        }
+    }
+
+    final Dimension dimension;
+    final String symbol;
+    private final double inBaseUnits;
+    private final String[] aliases;
+
+    Unit(Dimension dimension, double inBaseUnits, String symbol, String... aliases) {
+        this.dimension = dimension;
+        this.inBaseUnits = inBaseUnits;
+        this.symbol = symbol;
+        this.aliases = aliases;
+    }
+
+    /**
+     * A unit dictionary with every known unit and its aliases interned under the unit's ordinal.
+     */
+    static Dictionary newDictionary() {
+        Dictionary units = new Dictionary();
+        for (Unit unit : VALUES) {
+            units.intern(unit.symbol);
+        }
+        for (Unit unit : VALUES) {
+            for (String alias : unit.aliases) {
+                units.alias(alias, unit.ordinal());
+            }
+        }
+        return units;
+    }
+
+    /**
+     * Factor converting quantities from one unit code into another, NaN when they do not convert.
+     */
+    static double factor(int from, int to) {
+        if (from == to) return 1;
+        if (from < 0 || from >= COUNT || to < 0 || to >= COUNT) return Double.NaN;
+        return FACTORS[from * COUNT + to];
+    }
+
+    static boolean isKnown(int code) {
+        return code >= 0 && code < COUNT;
+    }
+
+    static boolean isTime(int code) {
+        return code >= 0 && code < COUNT && VALUES[code].dimension == Dimension.TIME;
+    }
+}
@@ -0,0 +1,207 @@
+package com.dy.health;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DayProgressPublisherTest {
+
+    private static final Executor CALLER = Runnable::run;
+    private final LocalDate currentDate = LocalDate.parse("2016-09-28");
+    private double precision = 0.00001;
+    private HealthService healthService;
+
+    @Before
+    public void setUp() throws Exception {
+        Map<String, TimeRange> namedTimeRanges = new HashMap<>();
+        namedTimeRanges.put("all", new TimeRange(LocalTime.of(0, 0), LocalTime.of(0, 0)));
+        healthService = new HealthService(new HealthServiceSetup()
+                .setNamedTimeRanges(namedTimeRanges)
+                .setMinHoursOfMovementPerDay(2)
+                .setMinStepsPerDay(2000)
+                .setMinKilocalsPerDay(1300)
+                .setMinLitersPerDay(2));
+    }
+
+    @Test
+    public void publishesCurrentProgressAndEveryRequestedChange() throws Exception {
+        // arrange
+        healthService.drink("water", "glass", 2, at("08:00"));
+        RecordingSubscriber subscriber = new RecordingSubscriber(1);
+        // act
+        healthService.subscribe(currentDate, subscriber, CALLER);
+        subscriber.subscription.request(1);
+        healthService.drink("water", "glass", 2, at("10:00"));
+        // assert
+        assertEquals(2, subscriber.items.size());
+        assertEquals(1.5, subscriber.items.get(0).getUnfulfilledDayNormReport().getLiquidLitersLeft(), precision);
+        assertEquals(1.0, subscriber.items.get(1).getUnfulfilledDayNormReport().getLiquidLitersLeft(), precision);
+        assertEquals(0.5, subscriber.items.get(1).getDayReport().getLiquidLitersCompletionRate(), precision);
+        assertEquals(currentDate, subscriber.items.get(1).getDate());
+    }
+
+    @Test
+    public void coalescesChangesWhileNothingIsRequested() throws Exception {
+        // arrange
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        healthService.subscribe(currentDate, subscriber, CALLER);
+        // act
+        for (int i = 0; i < 1000; i++) {
+            healthService.drink("water", "glass", 1, at("08:00").plusSeconds(i));
+        }
+        subscriber.subscription.request(Long.MAX_VALUE);
+        // assert
+        assertEquals(1, subscriber.items.size());
+        assertEquals(0, subscriber.items.get(0).getUnfulfilledDayNormReport().getLiquidLitersLeft(), precision);
+    }
+
+    @Test
+    public void publishesOnceForBulkSync() throws Exception {
+        // arrange
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        healthService.subscribe(currentDate, subscriber, CALLER);
+        RecordBatch sync = new RecordBatch();
+        for (int i = 0; i < 1000; i++) {
+            sync.eat("nut", "kilocal", 1, at("08:00").plusSeconds(i));
+            sync.drink("water", "glass", 1, at("08:00").minusDays(1).plusSeconds(i)); // another day
+        }
+        // act
+        healthService.ingest(sync);
+        // assert
+        assertEquals(2, subscriber.items.size()); // the initial progress and the synced one
+        assertEquals(300, subscriber.items.get(1).getUnfulfilledDayNormReport().getKiloCalsLeft(), precision);
+    }
+
+    @Test
+    public void stopsPublishingWhenCancelled() throws Exception {
+        // arrange
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        healthService.subscribe(currentDate, subscriber, CALLER);
+        // act
+        subscriber.subscription.cancel();
+        healthService.drink("water", "glass", 1, at("08:00"));
+        // assert
+        assertEquals(1, subscriber.items.size());
+    }
+
+    @Test
+    public void failsSubscriptionOnNonPositiveRequest() throws Exception {
+        // arrange
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        healthService.subscribe(currentDate, subscriber, CALLER);
+        // act
+        subscriber.subscription.request(0);
+        healthService.drink("water", "glass", 1, at("08:00"));
+        subscriber.subscription.request(1);
+        // assert
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertTrue(subscriber.items.isEmpty());
+    }
+
+    @Test
+    public void failsSubscriptionWhenProgressCannotBeComputed() throws Exception {
+        // arrange
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        healthService.subscribe(currentDate, subscriber, CALLER);
+        // act
+        healthService.drink("water", "bucket", 1, at("08:00"));
+        // assert
+        assertTrue(subscriber.error instanceof IllegalStateException);
+    }
+
+    @Test
+    public void cancelsSubscriberThatThrows() throws Exception {
+        // arrange
+        IllegalStateException failure = new IllegalStateException("broken subscriber");
+        RecordingSubscriber broken = new RecordingSubscriber(Long.MAX_VALUE) {
+            @Override
+            public void onNext(DayProgress progress) {
+                super.onNext(progress);
+                if (items.size() == 2) throw failure;
+            }
+        };
+        RecordingSubscriber working = new RecordingSubscriber(Long.MAX_VALUE);
+        healthService.subscribe(currentDate, broken, CALLER);
+        healthService.subscribe(currentDate, working, CALLER);
+        // act
+        healthService.drink("water", "glass", 1, at("08:00"));
+        healthService.drink("water", "glass", 1, at("09:00"));
+        // assert
+        assertSame(failure, broken.error);
+        assertEquals(2, broken.items.size());
+        assertEquals(3, working.items.size());
+        assertEquals(1.5, working.items.get(2).getUnfulfilledDayNormReport().getLiquidLitersLeft(), precision);
+    }
+
+    @Test
+    public void deliversOnGivenExecutor() throws Exception {
+        // arrange
+        CountDownLatch initial = new CountDownLatch(1);
+        CountDownLatch changed = new CountDownLatch(2);
+        List<Thread> threads = new ArrayList<>();
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE) {
+            @Override
+            public void onNext(DayProgress progress) {
+                threads.add(Thread.currentThread());
+                initial.countDown();
+                changed.countDown();
+            }
+        };
+        // act
+        healthService.dayProgress(currentDate).subscribe(subscriber);
+        assertTrue(initial.await(5, TimeUnit.SECONDS)); // a change before this would be coalesced with it
+        healthService.drink("water", "glass", 1, at("08:00"));
+        // assert
+        assertTrue(changed.await(5, TimeUnit.SECONDS));
+        assertNotSame(Thread.currentThread(), threads.get(1));
+    }
+
+    private LocalDateTime at(String time) {
+        return currentDate.atTime(LocalTime.parse(time));
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<DayProgress> {
+        final List<DayProgress> items = new ArrayList<>();
+        final long initialRequest;
+        volatile Flow.Subscription subscription;
+        Throwable error;
+
+        RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(DayProgress progress) {
+            items.add(progress);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            throw new AssertionError("A day never completes");
+        }
+    }
+}
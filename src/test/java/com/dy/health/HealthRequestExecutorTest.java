@@ -0,0 +1,149 @@
+package com.dy.health;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HealthRequestExecutorTest {
+
+    private final LocalDate currentDate = LocalDate.parse("2016-09-28");
+    private final HealthServiceSetup setup = newSetup();
+    private HealthRequestExecutor executor;
+    private double precision = 0.00001;
+
+    private static HealthServiceSetup newSetup() {
+        Map<String, TimeRange> namedTimeRanges = new HashMap<>();
+        namedTimeRanges.put("all", new TimeRange(LocalTime.of(0, 0), LocalTime.of(0, 0)));
+        return new HealthServiceSetup()
+                .setNamedTimeRanges(namedTimeRanges)
+                .setMinHoursOfMovementPerDay(2)
+                .setMinStepsPerDay(2000)
+                .setMinKilocalsPerDay(1300)
+                .setMinLitersPerDay(2);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        executor = new HealthRequestExecutor(2, Executors.newFixedThreadPool(4));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.close();
+    }
+
+    @Test
+    public void answersEveryUserFromTheirOwnRecords() throws Exception {
+        // arrange
+        executor.register("alice", setup);
+        executor.register("bob", setup);
+        // act
+        executor.drink("alice", "water", "glass", 4, at("08:00")).join();
+        executor.move("bob", "step", 1000, at("09:00"), at("09:30")).join();
+        // assert
+        assertEquals(0.5, executor.getDayReport("alice", currentDate).join().getLiquidLitersCompletionRate(),
+                precision);
+        assertEquals(1000, executor.getPeriodReport("bob", currentDate, currentDate).join().getStepsMedian(),
+                precision);
+        assertEquals(0, executor.submit("bob", service -> service.drunk("glass", currentDate)).join(), precision);
+    }
+
+    @Test
+    public void boundsTheCallsRunningForOneUser() throws Exception {
+        // arrange
+        executor.register("alice", setup);
+        executor.register("bob", setup);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger mostRunning = new AtomicInteger();
+        List<CompletableFuture<Void>> storm = new ArrayList<>();
+        // act
+        for (int i = 0; i < 20; i++) {
+            storm.add(executor.execute("alice", service -> {
+                mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                service.drink("water", "glass", 1, at("08:00"));
+                running.decrementAndGet();
+            }));
+        }
+        while (running.get() < 2) {
+            Thread.sleep(1);
+        }
+        executor.drink("bob", "water", "glass", 1, at("08:00")).get(5, TimeUnit.SECONDS);
+        release.countDown();
+        CompletableFuture.allOf(storm.toArray(new CompletableFuture<?>[0])).join();
+        // assert
+        assertEquals(2, mostRunning.get());
+        assertEquals(20, executor.submit("alice", service -> service.drunk("glass", currentDate)).join(),
+                precision);
+    }
+
+    @Test
+    public void runsTheCallsOfAUserInOrderByDefault() throws Exception {
+        // arrange
+        executor.close();
+        executor = new HealthRequestExecutor();
+        executor.register("alice", setup);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> calls = new ArrayList<>();
+        // act
+        for (int i = 0; i < 100; i++) {
+            int call = i;
+            calls.add(executor.execute("alice", service -> order.add(call)));
+        }
+        CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0])).join();
+        // assert
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) order.get(i));
+        }
+    }
+
+    @Test(expected = CompletionException.class)
+    public void failsCallsOfUnknownUsers() throws Exception {
+        executor.getDayReport("nobody", currentDate).join();
+    }
+
+    @Test
+    public void failsWaitingCallsOnClose() throws Exception {
+        // arrange
+        executor.register("alice", setup);
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 2; i++) {
+            executor.execute("alice", service -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        CompletableFuture<DayReport> waiting = executor.getDayReport("alice", currentDate);
+        // act
+        executor.close();
+        release.countDown();
+        // assert
+        try {
+            waiting.join();
+            fail();
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    private LocalDateTime at(String time) {
+        return currentDate.atTime(LocalTime.parse(time));
+    }
+}
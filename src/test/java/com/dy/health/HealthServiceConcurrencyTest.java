@@ -0,0 +1,101 @@
+package com.dy.health;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class HealthServiceConcurrencyTest {
+
+    private static final int WRITERS = 8;
+    private static final int MOVES_PER_WRITER = 5000;
+    private static final int DAYS = 4;
+    private static final LocalDate FIRST_DATE = LocalDate.parse("2016-09-25");
+    private HealthService healthService;
+    private double precision = 0.00001;
+
+    @Before
+    public void setUp() throws Exception {
+        Map<String, TimeRange> namedTimeRanges = new HashMap<>();
+        namedTimeRanges.put("all", new TimeRange(LocalTime.of(0, 0), LocalTime.of(0, 0)));
+        // norms far out of reach so that the report reveals the raw totals
+        healthService = new HealthService(new HealthServiceSetup()
+                .setNamedTimeRanges(namedTimeRanges)
+                .setMinStepsPerDay(1e9)
+                .setMinHoursOfMovementPerDay(1e9)
+                .setMinKilocalsPerDay(1e9)
+                .setMinLitersPerDay(1e9));
+    }
+
+    @Test
+    public void concurrentWritersLoseNoRecordsAndReadersSeeConsistentDays() throws Exception {
+        // days without records report nothing left, so let every day exist before readers look at it
+        for (int day = 0; day < DAYS; day++) {
+            LocalDateTime moveStart = FIRST_DATE.plusDays(day).atTime(9, 0);
+            healthService.move("step", 100, moveStart, moveStart.plusHours(1));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + 2);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int writer = 0; writer < WRITERS; writer++) {
+            int offset = writer;
+            writers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < MOVES_PER_WRITER; i++) {
+                    // every move is 100 steps in one hour, so steps are always 100 times the hours
+                    LocalDateTime moveStart = FIRST_DATE.plusDays((offset + i) % DAYS).atTime(10, 0);
+                    healthService.move("step", 100, moveStart, moveStart.plusHours(1));
+                    healthService.drink("water", "glass", 1, moveStart);
+                }
+                return null;
+            }));
+        }
+        List<Future<Integer>> readers = new ArrayList<>();
+        for (int reader = 0; reader < 2; reader++) {
+            readers.add(executor.submit(() -> {
+                start.await();
+                int inconsistent = 0;
+                while (writing.get()) {
+                    for (int day = 0; day < DAYS; day++) {
+                        UnfulfilledDayNormReport report = healthService.getUnfulfilledDayNormReport(
+                                FIRST_DATE.plusDays(day));
+                        double steps = 1e9 - report.getStepsLeft();
+                        double hours = 1e9 - report.getHoursToMoveLeft();
+                        if (Math.abs(steps - hours * 100) > 1e-3) inconsistent++;
+                    }
+                    healthService.getPeriodReport(FIRST_DATE, FIRST_DATE.plusDays(DAYS - 1));
+                }
+                return inconsistent;
+            }));
+        }
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(1, TimeUnit.MINUTES);
+        }
+        writing.set(false);
+        for (Future<Integer> reader : readers) {
+            assertEquals(0, (int) reader.get(1, TimeUnit.MINUTES));
+        }
+        executor.shutdown();
+
+        double movesPerDay = WRITERS * MOVES_PER_WRITER / (double) DAYS;
+        for (int day = 0; day < DAYS; day++) {
+            LocalDate date = FIRST_DATE.plusDays(day);
+            assertEquals((movesPerDay + 1) * 100, healthService.moved("step", date), precision);
+            assertEquals(movesPerDay + 1, healthService.moved("hour", date), precision);
+            assertEquals(movesPerDay, healthService.drunk("glass", date), precision);
+            assertEquals(movesPerDay * 0.25, healthService.drunk("liter", date), precision);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.dy.health;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class HealthServiceRegistryTest {
+
+    private final LocalDate currentDate = LocalDate.parse("2016-09-28");
+    private HealthServiceRegistry registry;
+    private double precision = 0.00001;
+
+    private static HealthServiceSetup newSetup(double minLitersPerDay) {
+        Map<String, TimeRange> namedTimeRanges = new HashMap<>();
+        namedTimeRanges.put("all", new TimeRange(LocalTime.of(0, 0), LocalTime.of(0, 0)));
+        return new HealthServiceSetup()
+                .setNamedTimeRanges(namedTimeRanges)
+                .setMinHoursOfMovementPerDay(2)
+                .setMinStepsPerDay(2000)
+                .setMinKilocalsPerDay(1300)
+                .setMinLitersPerDay(minLitersPerDay);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        registry = new HealthServiceRegistry(4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        registry.close();
+    }
+
+    @Test
+    public void keepsRecordsOfEveryUserApart() throws Exception {
+        // arrange
+        registry.register("alice", newSetup(2)).join();
+        registry.register("bob", newSetup(2)).join();
+        // act
+        registry.execute("alice", service -> service.drink("water", "glass", 4, at("08:00"))).join();
+        registry.execute("bob", service -> service.drink("water", "glass", 2, at("08:00"))).join();
+        // assert
+        assertEquals(4, registry.submit("alice", service -> service.drunk("glass", currentDate)).join(), precision);
+        assertEquals(0.25, registry.getDayReport("bob", currentDate).join().getLiquidLitersCompletionRate(),
+                precision);
+    }
+
+    @Test
+    public void sharesIdenticalSetups() throws Exception {
+        // arrange
+        // act
+        for (int user = 0; user < 100; user++) {
+            registry.register("user-" + user, newSetup(user % 2 == 0 ? 2 : 3.5));
+        }
+        // assert
+        assertEquals(2, registry.distinctSetupCount());
+    }
+
+    @Test
+    public void keepsSharedSetupsFromChangesOfOneUser() throws Exception {
+        // arrange
+        registry.register("alice", newSetup(2)).join();
+        registry.register("bob", newSetup(2)).join();
+        // act
+        registry.execute("alice", service -> service.getSetup().setMinLitersPerDay(1)).join();
+        registry.register("carol", newSetup(2)).join();
+        // assert
+        assertEquals(1, registry.distinctSetupCount());
+        assertEquals(2, registry.submit("alice", service -> service.getSetup().getMinLitersPerDay()).join(),
+                precision);
+        assertEquals(2, registry.submit("bob", service -> service.getSetup().getMinLitersPerDay()).join(),
+                precision);
+    }
+
+    @Test
+    public void computesCohortReportsAcrossShards() throws Exception {
+        // arrange
+        List<String> cohort = new ArrayList<>();
+        for (int user = 0; user < 40; user++) {
+            String userId = "user-" + user;
+            cohort.add(userId);
+            registry.register(userId, newSetup(2));
+            double glasses = user;
+            registry.execute(userId, service -> service.drink("water", "glass", glasses, at("08:00")));
+        }
+        // act
+        Map<String, PeriodReport> reports = registry.getPeriodReports(cohort, currentDate.minusDays(2),
+                currentDate).join();
+        // assert
+        assertEquals(40, reports.size());
+        for (int user = 0; user < 40; user++) {
+            assertEquals(0, reports.get("user-" + user).getLiquidLitersMedian(), precision);
+        }
+        Map<String, DayReport> dayReports = registry.getDayReports(cohort, currentDate).join();
+        assertEquals(1.0, dayReports.get("user-8").getLiquidLitersCompletionRate(), precision);
+    }
+
+    @Test
+    public void splitsCohortReportsOverUsersAndDays() throws Exception {
+        // arrange
+        List<String> cohort = new ArrayList<>();
+        for (int user = 0; user < 10; user++) {
+            String userId = "user-" + user;
+            cohort.add(userId);
+            registry.register(userId, newSetup(2));
+            for (int day = 0; day < 365; day += 1 + user) {
+                double steps = (day * 37 + user * 101) % 5000;
+                LocalDateTime time = at("08:00").minusDays(day);
+                registry.execute(userId, service -> service.move("step", steps, time, time.plusMinutes(30)));
+            }
+        }
+        LocalDate start = currentDate.minusDays(364);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        // act
+        Map<String, PeriodReport> exact = registry.getPeriodReports(cohort, start, currentDate,
+                MedianMode.exact(), pool).join();
+        Map<String, PeriodReport> approximate = registry.getPeriodReports(cohort, start, currentDate,
+                MedianMode.approximate(0.01), pool).join();
+        pool.shutdown();
+        // assert
+        for (String userId : cohort) {
+            PeriodReport single = registry.getPeriodReport(userId, start, currentDate).join();
+            assertEquals(single.getStepsMedian(), exact.get(userId).getStepsMedian(), precision);
+            assertEquals(single.getHoursMovedMedian(), exact.get(userId).getHoursMovedMedian(), precision);
+            assertEquals(single.getStepsMedian(), approximate.get(userId).getStepsMedian(),
+                    single.getStepsMedian() * 0.01);
+            assertEquals(start, exact.get(userId).getStartDate());
+        }
+    }
+
+    @Test
+    public void rejectsUnknownUsers() throws Exception {
+        try {
+            registry.getDayReport("nobody", currentDate).join();
+            fail();
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    private LocalDateTime at(String time) {
+        return currentDate.atTime(LocalTime.parse(time));
+    }
+}
@@ -7,8 +7,10 @@ import org.junit.Test;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -19,6 +21,7 @@ public class HealthServiceTest {
     private static final String LUNCH = "lunch";
     private static final String WATER = "water";
     private static final String GLASS = "glass";
+    private static final String LITER = "liter";
     private static final String KILO_CALORIE = "kilocal";
     private static final String STEP = "step";
     private static final String SANDWICH = "sandwich";
@@ -102,6 +105,33 @@ public class HealthServiceTest {
         assertEquals(lunchQuantityEaten, actualBreakfastEaten, precision);
     }
 
+    @Test
+    public void canHaveMealsRecordedOutOfOrder() throws Exception {
+        // arrange
+        // act
+        eat(704, KILO_CALORIE, PELMENI, DINNER_DATE_TIME);
+        eat(504, KILO_CALORIE, PIZZA, LUNCH_DATE_TIME);
+        eat(204, KILO_CALORIE, SANDWICH, BREAKFAST_DATE_TIME);
+        healthService.ingest(new RecordBatch()
+                .eat(SANDWICH, KILO_CALORIE, 100, LocalDateTime.parse("2016-09-28T09:00:00"))
+                .eat(PIZZA, KILO_CALORIE, 10, LocalDateTime.parse("2016-09-28T12:00:00"))
+                .eat(PIZZA, KILO_CALORIE, 1, LocalDateTime.parse("2016-09-28T23:00:00")));
+        // assert
+        assertEquals(314, healthService.eaten(BREAKFAST, KILO_CALORIE, currentDate), precision); // 12:00 closes breakfast
+        assertEquals(504, healthService.eaten(LUNCH, KILO_CALORIE, currentDate), precision);
+        assertEquals(1523, healthService.eaten(ALL, KILO_CALORIE, currentDate), precision);
+    }
+
+    @Test
+    public void canBreakDayDownByMeals() throws Exception {
+        // arrange
+        // act
+        performActivitiesForOneDay();
+        // assert
+        double[] eaten = healthService.eatenByMeal(KILO_CALORIE, currentDate, BREAKFAST, LUNCH, "dinner", ALL);
+        assertArrayEquals(new double[]{204, 504, 0, 1412}, eaten, precision);
+    }
+
     @Test
     public void canCountSteps() throws Exception {
         // arrange
@@ -115,6 +145,92 @@ public class HealthServiceTest {
         assertEquals(quantity, actualMoved, precision);
     }
 
+    @Test
+    public void reportsNothingForDayWithoutRecords() throws Exception {
+        // arrange
+        // act
+        performActivitiesForOneDay();
+        // assert
+        LocalDate emptyDate = currentDate.plusDays(1);
+        assertEquals(0, healthService.drunk(GLASS, emptyDate), precision);
+        assertEquals(0, healthService.eaten(ALL, KILO_CALORIE, emptyDate), precision);
+        assertEquals(0, healthService.moved(STEP, emptyDate), precision);
+    }
+
+    @Test
+    public void canReportLitersDrunkFromGlassesAndLiters() throws Exception {
+        // arrange
+        // act
+        drink(2, GLASS, WATER, "2016-09-28T08:00:00");
+        drink(1.5, LITER, WATER, "2016-09-28T12:00:00");
+        // assert
+        assertEquals(2.0, healthService.drunk(LITER, currentDate), precision);
+        assertEquals(0, healthService.getUnfulfilledDayNormReport(currentDate).getLiquidLitersLeft(), precision);
+    }
+
+    @Test
+    public void canConvertBetweenUnitsOfTheSameKind() throws Exception {
+        // arrange
+        // act
+        drink(250, "ml", WATER, "2016-09-28T08:00:00");
+        drink(1, "cup", WATER, "2016-09-28T10:00:00");
+        drink(8, "oz", WATER, "2016-09-28T11:00:00");
+        eat(2092, "kJ", SANDWICH, BREAKFAST_DATE_TIME);
+        eat(300, KILO_CALORIE, PIZZA, LUNCH_DATE_TIME);
+        move(45, "minute", "2016-09-28T09:00:00", "2016-09-28T10:00:00");
+        move(2, "km", "2016-09-29T18:00:00", "2016-09-29T18:30:00");
+        // assert
+        assertEquals(0.25 + 0.2365882365 + 8 * 0.0295735295625, healthService.drunk(LITER, currentDate), precision);
+        assertEquals(250 + 236.5882365 + 8 * 29.5735295625, healthService.drunk("milliliter", currentDate), precision);
+        assertEquals(500, healthService.eaten(BREAKFAST, KILO_CALORIE, currentDate), precision);
+        assertEquals(800, healthService.eaten(ALL, KILO_CALORIE, currentDate), precision);
+        assertEquals(300 * 4.184, healthService.eaten(LUNCH, "kilojoule", currentDate), precision);
+        assertEquals(0.75, healthService.moved("hour", currentDate), precision);
+        assertEquals(45, healthService.moved("min", currentDate), precision);
+        assertEquals(2000, healthService.moved("meter", currentDate.plusDays(1)), precision);
+        assertEquals(30, healthService.moved("minute", currentDate.plusDays(1)), precision); // a walk lasts its duration
+    }
+
+    @Test
+    public void movesInDistancesCountNoStepsButTheirDuration() throws Exception {
+        // arrange
+        drink(4, GLASS, WATER, "2016-09-28T08:00:00");
+        move(1000, STEP, "2016-09-28T09:00:00", "2016-09-28T09:30:00");
+        // act
+        move(5, "km", "2016-09-28T18:00:00", "2016-09-28T19:00:00");
+        // assert
+        DayReport dayReport = healthService.getDayReport(currentDate);
+        assertEquals(0.5, dayReport.getStepsCompletionRate(), precision);
+        assertEquals(0.75, dayReport.getHoursToMoveCompletionRate(), precision);
+        PeriodReport periodReport = healthService.getPeriodReport(currentDate, currentDate);
+        assertEquals(1000, periodReport.getStepsMedian(), precision);
+        assertEquals(1, healthService.lazyPeriodReport(currentDate, currentDate).getLiquidLitersMedian(), precision);
+        assertEquals(1000, healthService.moved(STEP, currentDate), precision);
+        assertEquals(1000, healthService.moved(new TimeRange(LocalTime.of(8, 0), LocalTime.of(20, 0)), STEP,
+                currentDate), precision);
+        try {
+            healthService.moved("km", currentDate); // steps do not tell the distance either
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failsToConvertBetweenUnitsOfDifferentKinds() throws Exception {
+        // arrange
+        drink(1, LITER, WATER, "2016-09-28T08:00:00");
+        // act
+        healthService.drunk(KILO_CALORIE, currentDate);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failsToReportDayWithUnconvertibleUnit() throws Exception {
+        // arrange
+        drink(1, "bucket", WATER, "2016-09-28T08:00:00");
+        // act
+        healthService.getUnfulfilledDayNormReport(currentDate);
+    }
+
     @Test
     public void canReportHowMuchIsLeftForTheDay() throws Exception {
         // arrange
@@ -171,6 +287,526 @@ public class HealthServiceTest {
         assertEquals(1.5, periodReport.getLiquidLitersMedian(), precision);
     }
 
+    @Test
+    public void periodReportAccountsForLateRecords() throws Exception {
+        // arrange
+        String firstDate = "2016-09-24";
+        performActivityForFourDays();
+        healthService.getPeriodReport(LocalDate.parse(firstDate), currentDate);
+        // act
+        drink(8, GLASS, WATER, "2016-09-26T09:00:00"); // arrives after the day has been reported
+        eat(1500, KILO_CALORIE, PIZZA, "2016-09-24T19:00:00");
+        // assert
+        PeriodReport periodReport = healthService.getPeriodReport(LocalDate.parse(firstDate),
+                currentDate);
+        assertEquals(2.0, periodReport.getLiquidLitersMedian(), precision);
+        assertEquals(1412, periodReport.getKilocalsMedian(), precision);
+        assertEquals(1500, periodReport.getStepsMedian(), precision);
+    }
+
+    @Test
+    public void rollingReportSlidesAndFollowsLateRecords() throws Exception {
+        // arrange
+        performActivityForFourDays();
+        RollingPeriodReport rolling = healthService.rollingPeriodReport(LocalDate.parse("2016-09-26"), 3);
+        // act
+        rolling.advance();
+        drink(8, GLASS, WATER, "2016-09-26T09:00:00"); // arrives after the day has been reported
+        rolling.advanceTo(currentDate);
+        // assert
+        PeriodReport expected = healthService.getPeriodReport(LocalDate.parse("2016-09-26"), currentDate);
+        PeriodReport report = rolling.getReport();
+        assertEquals(expected.getStartDate(), report.getStartDate());
+        assertEquals(expected.getStepsMedian(), report.getStepsMedian(), precision);
+        assertEquals(expected.getHoursMovedMedian(), report.getHoursMovedMedian(), precision);
+        assertEquals(expected.getKilocalsMedian(), report.getKilocalsMedian(), precision);
+        assertEquals(expected.getLiquidLitersMedian(), report.getLiquidLitersMedian(), precision);
+    }
+
+    @Test
+    public void rollingReportMatchesPeriodReportEveryDay() throws Exception {
+        // arrange
+        RollingPeriodReport rolling = healthService.rollingPeriodReport(currentDate, 7);
+        Random random = new Random(3);
+        // act
+        for (int day = 1; day <= 60; day++) {
+            LocalDate date = currentDate.plusDays(day);
+            for (int late = 0; late < 3; late++) {
+                LocalDateTime time = date.minusDays(random.nextInt(10)).atTime(8 + random.nextInt(12), 0);
+                healthService.drink(WATER, GLASS, random.nextInt(5), time);
+                healthService.eat(PIZZA, KILO_CALORIE, 100 * random.nextInt(10), time);
+            }
+            rolling.advance();
+            // assert
+            PeriodReport expected = healthService.getPeriodReport(date.minusDays(6), date);
+            assertEquals(expected.getKilocalsMedian(), rolling.getReport().getKilocalsMedian(), precision);
+            assertEquals(expected.getLiquidLitersMedian(), rolling.getReport().getLiquidLitersMedian(), precision);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rollingReportRejectsUnconvertibleRecords() throws Exception {
+        // arrange
+        RollingPeriodReport rolling = healthService.rollingPeriodReport(currentDate, 7);
+        // act
+        drink(1, "bucket", WATER, BREAKFAST_DATE_TIME);
+        // assert
+        rolling.getReport();
+    }
+
+    @Test
+    public void canReportStatisticsForLongPeriod() throws Exception {
+        // arrange
+        LocalDate firstDate = currentDate.minusYears(2);
+        // act
+        performActivityForFourDays();
+        drink(4, GLASS, WATER, firstDate.atTime(8, 0).toString());
+        // assert
+        PeriodReport periodReport = healthService.getPeriodReport(firstDate.minusDays(10),
+                currentDate.plusDays(10));
+        assertEquals(0, periodReport.getLiquidLitersMedian(), precision);
+        PeriodReport firstDay = healthService.getPeriodReport(firstDate, firstDate);
+        assertEquals(1.0, firstDay.getLiquidLitersMedian(), precision);
+    }
+
+    @Test
+    public void canReportApproximateStatisticsForFourDayPeriod() throws Exception {
+        // arrange
+        String firstDate = "2016-09-25";
+        double relativeError = 0.01;
+        // act
+        performActivityForFourDays();
+        // assert
+        PeriodReport periodReport = healthService.getPeriodReport(LocalDate.parse(firstDate),
+                currentDate, MedianMode.approximate(relativeError));
+        assertEquals(1650, periodReport.getStepsMedian(), 1650 * relativeError);
+        assertEquals(1.25, periodReport.getHoursMovedMedian(), 1.25 * relativeError);
+        assertEquals(1412, periodReport.getKilocalsMedian(), 1412 * relativeError);
+        assertEquals(1.75, periodReport.getLiquidLitersMedian(), 1.75 * relativeError);
+    }
+
+    @Test
+    public void periodReportHasStatisticsOfEveryMetric() throws Exception {
+        // arrange
+        performActivityForFourDays();
+        LocalDate firstDate = currentDate.minusDays(3);
+        // act
+        PeriodReport report = healthService.getPeriodReport(firstDate, currentDate);
+        // assert
+        MetricStatistics steps = report.getStepsStatistics(); // 1800, 0, 1800, 1500
+        assertEquals(4, steps.getDays());
+        assertEquals(1275, steps.getMean(), precision);
+        assertEquals(Math.sqrt(556875), steps.getStandardDeviation(), precision);
+        assertEquals(0, steps.getMin(), precision);
+        assertEquals(1800, steps.getMax(), precision);
+        assertEquals(450, steps.getPercentile10(), precision);
+        assertEquals(1650, steps.getMedian(), precision);
+        assertEquals(1800, steps.getPercentile90(), precision);
+        assertEquals(0, steps.getDaysMeetingNorm());
+        MetricStatistics liters = report.getLiquidLitersStatistics(); // 2, 0, 1.5, 2
+        assertEquals(1.375, liters.getMean(), precision);
+        assertEquals(2, liters.getDaysMeetingNorm());
+        assertEquals(report.getKilocalsMedian(), report.getKilocalsStatistics().getMedian(), precision);
+        PeriodReport lazy = healthService.lazyPeriodReport(firstDate, currentDate);
+        PeriodReport rolling = healthService.rollingPeriodReport(currentDate, 4).getReport();
+        for (PeriodReport other : new PeriodReport[]{lazy, rolling}) {
+            MetricStatistics hours = other.getHoursMovedStatistics();
+            assertEquals(report.getHoursMovedStatistics().getMean(), hours.getMean(), precision);
+            assertEquals(report.getHoursMovedStatistics().getPercentile90(), hours.getPercentile90(), precision);
+            assertEquals(report.getHoursMovedStatistics().getStandardDeviation(), hours.getStandardDeviation(),
+                    precision);
+            assertEquals(2, other.getLiquidLitersStatistics().getDaysMeetingNorm());
+        }
+        assertNull(new PeriodReport(firstDate, currentDate, 1, 2, 3, 4).getStepsStatistics());
+    }
+
+    @Test
+    public void lazyPeriodReportComputesEachMedianOnFirstRead() throws Exception {
+        // arrange
+        performActivityForFourDays();
+        LocalDate firstDate = currentDate.minusDays(3);
+        PeriodReport lazy = healthService.lazyPeriodReport(firstDate, currentDate);
+        // act
+        double steps = lazy.getStepsMedian();
+        move(3000, STEP, "2016-09-26T09:00:00", "2016-09-26T09:30:00");
+        drink(4, LITER, WATER, "2016-09-26T10:00:00");
+        // assert
+        assertEquals(1650, steps, precision);
+        assertEquals(1650, lazy.getStepsMedian(), precision); // kept from the first read
+        assertEquals(2, lazy.getLiquidLitersMedian(), precision); // first read after the drink
+        PeriodReport eager = healthService.getPeriodReport(firstDate, currentDate);
+        assertEquals(1800, eager.getStepsMedian(), precision);
+        assertEquals(eager.getLiquidLitersMedian(), lazy.getLiquidLitersMedian(), precision);
+        assertEquals(eager.getKilocalsMedian(), lazy.getKilocalsMedian(), precision);
+        assertEquals(eager.getHoursMovedMedian(), lazy.getHoursMovedMedian(), precision);
+    }
+
+    @Test
+    public void offHeapDaysAnswerLikeHeapDays() throws Exception {
+        // arrange
+        HealthService offHeap = new HealthService(new HealthServiceSetup(setup)
+                .setOffHeapAfterDays(7)
+                .setInstrumented(true));
+        Random random = new Random(5);
+        // act
+        for (int day = 60; day >= 0; day--) {
+            for (int i = 0; i < 10; i++) {
+                LocalDateTime time = currentDate.minusDays(day).atTime(7 + i, random.nextInt(60));
+                int glasses = 1 + random.nextInt(3);
+                for (HealthService service : new HealthService[]{healthService, offHeap}) {
+                    service.drink(WATER, GLASS, glasses, time);
+                    service.eat(i % 2 == 0 ? PIZZA : SANDWICH, KILO_CALORIE, 100 + i, time);
+                    service.move(STEP, 100 * i, time, time.plusMinutes(10));
+                }
+            }
+        }
+        LocalDateTime late = currentDate.minusDays(30).atTime(9, 15);
+        healthService.eat(PELMENI, KILO_CALORIE, 700, late);
+        offHeap.eat(PELMENI, KILO_CALORIE, 700, late);
+        // assert
+        assertTrue(offHeap.getInstrumentation().toText().matches("(?s).*offHeapBytes [1-9].*"));
+        for (int day = 0; day <= 60; day++) {
+            LocalDate date = currentDate.minusDays(day);
+            assertEquals(healthService.drunk(LITER, date), offHeap.drunk(LITER, date), precision);
+            assertEquals(healthService.eaten(BREAKFAST, KILO_CALORIE, date),
+                    offHeap.eaten(BREAKFAST, KILO_CALORIE, date), precision);
+            assertEquals(healthService.moved("hour", date), offHeap.moved("hour", date), precision);
+        }
+        PeriodReport expected = healthService.getPeriodReport(currentDate.minusDays(60), currentDate);
+        PeriodReport report = offHeap.getPeriodReport(currentDate.minusDays(60), currentDate);
+        assertEquals(expected.getKilocalsMedian(), report.getKilocalsMedian(), precision);
+        assertEquals(expected.getStepsMedian(), report.getStepsMedian(), precision);
+    }
+
+    @Test
+    public void canChartDayByInterval() throws Exception {
+        // arrange
+        // act
+        performActivitiesForOneDay();
+        drink(1, GLASS, WATER, "2016-09-28T00:00:00");
+        // assert
+        double[] eaten = healthService.eatenByInterval(KILO_CALORIE, currentDate, 60);
+        assertEquals(24, eaten.length);
+        assertEquals(204, eaten[8], precision);
+        assertEquals(504, eaten[14], precision);
+        assertEquals(704, eaten[19], precision);
+        assertEquals(1412, Arrays.stream(eaten).sum(), precision);
+        double[] drunk = healthService.drunkByInterval(GLASS, currentDate, 15);
+        assertEquals(96, drunk.length);
+        assertEquals(1, drunk[0], precision); // midnight counts towards the first interval
+        assertEquals(1, drunk[32], precision);
+        assertEquals(healthService.drunk(GLASS, currentDate), Arrays.stream(drunk).sum(), precision);
+        double[] moved = healthService.movedByInterval("minute", currentDate, 720);
+        assertArrayEquals(new double[]{60, 30}, moved, precision);
+    }
+
+    @Test
+    public void canSumAnyTimeRange() throws Exception {
+        // arrange
+        // act
+        performActivitiesForOneDay();
+        eat(100, KILO_CALORIE, PIZZA, "2016-09-28T12:00:00");
+        // assert
+        assertEquals(healthService.eaten(BREAKFAST, KILO_CALORIE, currentDate),
+                healthService.eaten(new TimeRange(LocalTime.of(2, 0), LocalTime.NOON), KILO_CALORIE, currentDate),
+                precision);
+        assertEquals(504, healthService.eaten(new TimeRange(LocalTime.NOON, LocalTime.of(15, 0)), KILO_CALORIE,
+                currentDate), precision); // excludes its start
+        assertEquals(3, healthService.drunk(new TimeRange(LocalTime.of(8, 7), LocalTime.of(10, 14)), GLASS,
+                currentDate), precision);
+        assertEquals(1300, healthService.moved(new TimeRange(LocalTime.of(9, 29, 59), LocalTime.of(11, 31)),
+                STEP, currentDate), precision);
+        assertEquals(0, healthService.moved(new TimeRange(LocalTime.of(15, 0), LocalTime.of(9, 0)), STEP,
+                currentDate), precision);
+        assertEquals(1512, healthService.eaten(new TimeRange(LocalTime.MIDNIGHT, LocalTime.MIDNIGHT), KILO_CALORIE,
+                currentDate), precision);
+    }
+
+    @Test
+    public void timeRangeSumsMatchRecordScans() throws Exception {
+        // arrange
+        HealthService offHeap = new HealthService(new HealthServiceSetup(setup).setOffHeapAfterDays(1));
+        Random random = new Random(21);
+        RecordBatch batch = new RecordBatch();
+        for (int i = 0; i < 300; i++) {
+            LocalDateTime time = currentDate.atStartOfDay().plusSeconds(random.nextInt(24 * 60 * 4) * 15);
+            double glasses = 1 + random.nextInt(4);
+            if (i % 3 == 0) {
+                healthService.drink(WATER, GLASS, glasses, time);
+            } else {
+                batch.drink(WATER, GLASS, glasses, time);
+            }
+            offHeap.drink(WATER, GLASS, glasses, time);
+        }
+        healthService.ingest(batch);
+        // act
+        offHeap.drink(WATER, GLASS, 1, currentDate.plusDays(2).atTime(8, 0)); // moves the day off-heap
+        // assert
+        for (int i = 0; i < 500; i++) {
+            LocalTime start = LocalTime.ofSecondOfDay(random.nextInt(24 * 60 * 4) * 15);
+            LocalTime end = LocalTime.ofSecondOfDay(random.nextInt(24 * 60 * 4) * 15);
+            TimeRange range = new TimeRange(start, end);
+            assertEquals(offHeap.drunk(range, LITER, currentDate), healthService.drunk(range, LITER, currentDate),
+                    precision);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsIntervalsNotSplittingTheDayIntoQuarterHours() throws Exception {
+        healthService.eatenByInterval(KILO_CALORIE, currentDate, 20);
+    }
+
+    @Test
+    public void cachedReportsSurviveWritesToOtherDays() throws Exception {
+        // arrange
+        healthService = new HealthService(new HealthServiceSetup(setup).setReportCacheDays(10));
+        performActivityForFourDays();
+        LocalDate yesterday = currentDate.minusDays(1);
+        PeriodReport history = healthService.getPeriodReport(currentDate.minusDays(3), yesterday);
+        DayReport day = healthService.getDayReport(yesterday);
+        // act
+        drink(1, GLASS, WATER, "2016-09-28T20:00:00");
+        // assert
+        assertSame(history, healthService.getPeriodReport(currentDate.minusDays(3), yesterday));
+        assertSame(day, healthService.getDayReport(yesterday));
+        ReportCacheStatistics statistics = healthService.getReportCacheStatistics();
+        assertEquals(2, statistics.getHitCount());
+        assertEquals(2, statistics.getMissCount());
+        assertEquals(0, statistics.getInvalidationCount());
+        assertEquals(4, statistics.getWeight());
+    }
+
+    @Test
+    public void writesToACoveredDayInvalidateCachedReports() throws Exception {
+        // arrange
+        healthService = new HealthService(new HealthServiceSetup(setup).setReportCacheDays(10));
+        performActivityForFourDays();
+        LocalDate firstDate = currentDate.minusDays(3);
+        PeriodReport before = healthService.getPeriodReport(firstDate, currentDate);
+        DayReport today = healthService.getDayReport(currentDate);
+        // act
+        move(3000, STEP, "2016-09-26T09:00:00", "2016-09-26T09:30:00");
+        // assert
+        PeriodReport after = healthService.getPeriodReport(firstDate, currentDate);
+        assertEquals(1650, before.getStepsMedian(), precision);
+        assertEquals(1800, after.getStepsMedian(), precision);
+        assertSame(today, healthService.getDayReport(currentDate));
+        assertEquals(1, healthService.getReportCacheStatistics().getInvalidationCount());
+    }
+
+    @Test
+    public void reportCacheEvictsLeastRecentlyUsedBeyondItsDays() throws Exception {
+        // arrange
+        healthService = new HealthService(new HealthServiceSetup(setup).setReportCacheDays(5));
+        performActivityForFourDays();
+        PeriodReport week = healthService.getPeriodReport(currentDate.minusDays(3), currentDate);
+        healthService.getDayReport(currentDate);
+        // act
+        healthService.getPeriodReport(currentDate.minusDays(3), currentDate);
+        healthService.getDayReport(currentDate.minusDays(1));
+        // assert
+        ReportCacheStatistics statistics = healthService.getReportCacheStatistics();
+        assertEquals(1, statistics.getEvictionCount());
+        assertEquals(2, statistics.getSize());
+        assertEquals(5, statistics.getWeight());
+        assertSame(week, healthService.getPeriodReport(currentDate.minusDays(3), currentDate));
+        assertNotNull(healthService.getPeriodReport(currentDate.minusDays(99), currentDate)); // too long to cache
+        assertEquals(2, healthService.getReportCacheStatistics().getSize());
+    }
+
+    @Test
+    public void oldDaysAreSummarizedThenDropped() throws Exception {
+        // arrange
+        healthService = new HealthService(new HealthServiceSetup(setup)
+                .setRawRecordDays(2)
+                .setRetentionDays(5));
+        for (int day = 9; day >= 0; day--) {
+            healthService.drink(WATER, GLASS, 4, currentDate.minusDays(day).atTime(9, 0));
+            healthService.eat(PIZZA, KILO_CALORIE, 700, currentDate.minusDays(day).atTime(13, 0));
+        }
+        healthService.eviction().join();
+        // act
+        healthService.eat(PELMENI, KILO_CALORIE, 300, currentDate.minusDays(4).atTime(8, 0));
+        healthService.eat(PELMENI, KILO_CALORIE, 300, currentDate.minusDays(8).atTime(8, 0));
+        // assert
+        assertEquals(700, healthService.eaten(LUNCH, KILO_CALORIE, currentDate.minusDays(2)), precision);
+        LocalDate summarized = currentDate.minusDays(3);
+        assertEquals(1, healthService.drunk(LITER, summarized), precision);
+        assertEquals(700, healthService.eaten(ALL, KILO_CALORIE, summarized), precision);
+        assertEquals(0, healthService.eaten(LUNCH, KILO_CALORIE, summarized), precision);
+        assertEquals(0.5, healthService.getDayReport(summarized).getLiquidLitersCompletionRate(), precision);
+        LocalDate late = currentDate.minusDays(4);
+        assertEquals(1000, healthService.eaten(ALL, KILO_CALORIE, late), precision);
+        assertEquals(0, healthService.eaten(BREAKFAST, KILO_CALORIE, late), precision);
+        assertEquals(0, healthService.drunk(LITER, currentDate.minusDays(6)), precision);
+        assertEquals(0, healthService.eaten(ALL, KILO_CALORIE, currentDate.minusDays(8)), precision);
+        PeriodReport report = healthService.getPeriodReport(currentDate.minusDays(9), currentDate);
+        assertEquals(450, report.getKilocalsStatistics().getMean(), precision);
+    }
+
+    @Test
+    public void summarizedDaysStillFailOnUnconvertibleRecords() throws Exception {
+        // arrange
+        healthService = new HealthService(new HealthServiceSetup(setup).setRawRecordDays(1));
+        LocalDate broken = currentDate.minusDays(3);
+        healthService.drink(WATER, GLASS, 4, broken.atTime(8, 0));
+        healthService.drink(WATER, KILO_CALORIE, 1, broken.atTime(9, 0));
+        healthService.eat(PIZZA, KILO_CALORIE, 700, broken.atTime(13, 0));
+        // act
+        healthService.drink(WATER, GLASS, 4, currentDate.atTime(8, 0));
+        healthService.eviction().join();
+        // assert
+        assertEquals(700, healthService.eaten(ALL, KILO_CALORIE, broken), precision);
+        assertEquals(0, healthService.eaten(LUNCH, KILO_CALORIE, broken), precision);
+        try {
+            healthService.getDayReport(broken);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            healthService.getPeriodReport(broken, currentDate);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void retainedDaysAndRecordsStayBoundedOverYears() throws Exception {
+        // arrange
+        healthService = new HealthService(new HealthServiceSetup(setup)
+                .setRawRecordDays(7)
+                .setRetentionDays(60)
+                .setInstrumented(true));
+        LocalDate first = currentDate.minusYears(3);
+        RecordBatch batch = new RecordBatch();
+        // act
+        for (LocalDate date = first; !date.isAfter(currentDate); date = date.plusDays(1)) {
+            batch.clear();
+            for (int hour = 8; hour < 20; hour += 4) {
+                batch.drink(WATER, GLASS, 2, date.atTime(hour, 0));
+                batch.eat(SANDWICH, KILO_CALORIE, 300, date.atTime(hour, 30));
+                batch.move(STEP, 700, date.atTime(hour, 40), date.atTime(hour, 50));
+            }
+            healthService.ingest(batch);
+            // assert
+            if (date.getDayOfMonth() == 1) {
+                healthService.eviction().join();
+                assertTrue(gauge("days") <= 61);
+                assertTrue(gauge("records") <= 8 * 9);
+            }
+        }
+        healthService.eviction().join();
+        assertEquals(61, gauge("days"));
+        assertEquals(8 * 9, gauge("records"));
+        assertEquals(1.5, healthService.drunk(LITER, currentDate.minusDays(60)), precision);
+        assertEquals(0, healthService.drunk(LITER, currentDate.minusDays(61)), precision);
+    }
+
+    private long gauge(String name) {
+        for (String line : healthService.getInstrumentation().toText().split("\n")) {
+            if (line.startsWith(name + ' ')) return Long.parseLong(line.substring(name.length() + 1));
+        }
+        throw new AssertionError("No gauge " + name);
+    }
+
+    @Test
+    public void batchIngestionMatchesSingleCalls() throws Exception {
+        // arrange
+        HealthService batchService = new HealthService(setup);
+        RecordBatch batch = new RecordBatch()
+                .drink(WATER, GLASS, 3, LocalDateTime.parse("2016-09-28T14:44:00"))
+                .eat(SANDWICH, KILO_CALORIE, 204, LocalDateTime.parse("2016-09-25T08:30:00"))
+                .move(STEP, 1000, LocalDateTime.parse("2016-09-27T11:30:00"), LocalDateTime.parse("2016-09-27T12:00:00"))
+                .eat(PIZZA, KILO_CALORIE, 504, LocalDateTime.parse("2016-09-28T14:30:00"))
+                .drink(WATER, GLASS, 1, LocalDateTime.parse("2016-09-25T08:14:00"));
+        // act
+        batchService.ingest(batch);
+        drink(3, GLASS, WATER, "2016-09-28T14:44:00");
+        eat(204, KILO_CALORIE, SANDWICH, "2016-09-25T08:30:00");
+        move(1000, STEP, "2016-09-27T11:30:00", "2016-09-27T12:00:00");
+        eat(504, KILO_CALORIE, PIZZA, "2016-09-28T14:30:00");
+        drink(1, GLASS, WATER, "2016-09-25T08:14:00");
+        // assert
+        for (LocalDate date = LocalDate.parse("2016-09-25"); !date.isAfter(currentDate); date = date.plusDays(1)) {
+            assertEquals(healthService.drunk(LITER, date), batchService.drunk(LITER, date), precision);
+            assertEquals(healthService.eaten(LUNCH, KILO_CALORIE, date),
+                    batchService.eaten(LUNCH, KILO_CALORIE, date), precision);
+            assertEquals(healthService.moved("hour", date), batchService.moved("hour", date), precision);
+            assertEquals(healthService.getDayReport(date).getStepsCompletionRate(),
+                    batchService.getDayReport(date).getStepsCompletionRate(), precision);
+        }
+    }
+
+    @Test
+    public void canSplitMoveAcrossMidnight() throws Exception {
+        // arrange
+        // act
+        move(4000, STEP, "2016-09-27T22:00:00", "2016-09-28T02:00:00");
+        // assert
+        LocalDate previousDate = currentDate.minusDays(1);
+        assertEquals(2000, healthService.moved(STEP, previousDate), precision);
+        assertEquals(2, healthService.moved("hour", previousDate), precision);
+        assertEquals(2000, healthService.moved(STEP, currentDate), precision);
+        assertEquals(2, healthService.moved("hour", currentDate), precision);
+        assertEquals(1, healthService.getDayReport(currentDate).getHoursToMoveCompletionRate(), precision);
+    }
+
+    @Test
+    public void canSplitMoveSpanningWeeks() throws Exception {
+        // arrange
+        LocalDate firstDate = LocalDate.parse("2016-09-01");
+        // act
+        move(63000, STEP, "2016-09-01T12:00:00", "2016-09-22T12:00:00");
+        // assert
+        assertEquals(1500, healthService.moved(STEP, firstDate), precision); // half a day
+        assertEquals(12, healthService.moved("hour", firstDate), precision);
+        for (int day = 1; day < 21; day++) {
+            assertEquals(3000, healthService.moved(STEP, firstDate.plusDays(day)), precision);
+            assertEquals(24, healthService.moved("hour", firstDate.plusDays(day)), precision);
+        }
+        assertEquals(1500, healthService.moved(STEP, firstDate.plusDays(21)), precision);
+        assertEquals(0, healthService.moved(STEP, firstDate.plusDays(22)), precision);
+        PeriodReport report = healthService.getPeriodReport(firstDate, firstDate.plusDays(21));
+        assertEquals(3000, report.getStepsMedian(), precision);
+        assertEquals(24, report.getHoursMovedMedian(), precision);
+    }
+
+    @Test
+    public void splitsMoveOverClockChangeByWallClock() throws Exception {
+        // arrange
+        // act
+        move(600, STEP, "2016-03-26T23:00:00", "2016-03-27T05:00:00"); // clocks go forward at 02:00 in Europe
+        move(700, STEP, "2016-10-29T23:30:00", "2016-10-30T06:30:00"); // and back at 03:00
+        // assert
+        assertEquals(100, healthService.moved(STEP, LocalDate.parse("2016-03-26")), precision);
+        assertEquals(500, healthService.moved(STEP, LocalDate.parse("2016-03-27")), precision);
+        assertEquals(5, healthService.moved("hour", LocalDate.parse("2016-03-27")), precision);
+        assertEquals(50, healthService.moved(STEP, LocalDate.parse("2016-10-29")), precision);
+        assertEquals(650, healthService.moved(STEP, LocalDate.parse("2016-10-30")), precision);
+        assertEquals(6.5, healthService.moved("hour", LocalDate.parse("2016-10-30")), precision);
+    }
+
+    @Test
+    public void batchSplitsMoveLikeSingleCall() throws Exception {
+        // arrange
+        HealthService batchService = new HealthService(setup);
+        // act
+        move(1000, STEP, "2016-09-27T23:30:00", "2016-09-28T00:30:00");
+        batchService.ingest(new RecordBatch().move(STEP, 1000, LocalDateTime.parse("2016-09-27T23:30:00"),
+                LocalDateTime.parse("2016-09-28T00:30:00")));
+        // assert
+        for (LocalDate date : new LocalDate[]{currentDate.minusDays(1), currentDate}) {
+            assertEquals(500, batchService.moved(STEP, date), precision);
+            assertEquals(healthService.moved(STEP, date), batchService.moved(STEP, date), precision);
+            assertEquals(healthService.moved("hour", date), batchService.moved("hour", date), precision);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMoveEndingBeforeItStarts() throws Exception {
+        move(1000, STEP, "2016-09-28T00:30:00", "2016-09-27T23:30:00");
+    }
+
     private void performActivityForFourDays() {
         // day 1
         drink(1, GLASS, WATER, "2016-09-25T08:14:00");
@@ -0,0 +1,112 @@
+package com.dy.health;
+
+import org.junit.Test;
+
+import javax.management.DynamicMBean;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class InstrumentationTest {
+
+    private final LocalDate currentDate = LocalDate.parse("2016-09-28");
+
+    private static HealthServiceSetup setup(boolean instrumented) {
+        Map<String, TimeRange> namedTimeRanges = new HashMap<>();
+        namedTimeRanges.put("all", new TimeRange(LocalTime.of(0, 0), LocalTime.of(0, 0)));
+        return new HealthServiceSetup()
+                .setNamedTimeRanges(namedTimeRanges)
+                .setMinHoursOfMovementPerDay(2)
+                .setMinStepsPerDay(2000)
+                .setMinKilocalsPerDay(1300)
+                .setMinLitersPerDay(2)
+                .setInstrumented(instrumented);
+    }
+
+    @Test
+    public void histogramPercentilesStayWithinBucketPrecision() throws Exception {
+        // arrange
+        LatencyHistogram histogram = new LatencyHistogram();
+        // act
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1000L);
+        }
+        // assert
+        assertEquals(10_000, histogram.count());
+        assertEquals(5_000_500, histogram.mean());
+        assertEquals(10_000_000, histogram.max());
+        assertEquals(5_000_000, histogram.percentile(0.5), 5_000_000 / 16.0);
+        assertEquals(9_900_000, histogram.percentile(0.99), 9_900_000 / 16.0);
+        assertTrue(histogram.percentile(0.5) >= 5_000_000);
+    }
+
+    @Test
+    public void bucketsCoverEveryValue() throws Exception {
+        // arrange
+        long[] values = {0, 1, 15, 16, 17, 100, 1_000_003, Long.MAX_VALUE};
+        // act
+        // assert
+        for (long value : values) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(value <= LatencyHistogram.highestValueOf(index));
+            assertTrue(index == 0 || value > LatencyHistogram.highestValueOf(index - 1));
+        }
+    }
+
+    @Test
+    public void countsCallsAndRecords() throws Exception {
+        // arrange
+        HealthService service = new HealthService(setup(true));
+        // act
+        service.drink("water", "glass", 1, currentDate.atTime(8, 0));
+        service.drink("water", "glass", 1, currentDate.atTime(10, 0));
+        service.eat("porridge", "kilocal", 300, currentDate.atTime(8, 30));
+        service.move("step", 1000, currentDate.atTime(9, 0), currentDate.atTime(9, 30));
+        service.drunk("glass", currentDate);
+        service.getDayReport(currentDate);
+        service.getPeriodReport(currentDate, currentDate.plusDays(6));
+        // assert
+        String text = service.getInstrumentation().toText();
+        assertTrue(text, text.contains("drink.count 2\n"));
+        assertTrue(text, text.contains("eat.count 1\n"));
+        assertTrue(text, text.contains("move.count 1\n"));
+        assertTrue(text, text.contains("drunk.count 1\n"));
+        assertTrue(text, text.contains("calculate.count 0\n")); // glasses are converted from the liter total
+        assertTrue(text, text.contains("getDayReport.count 1\n"));
+        assertTrue(text, text.contains("getUnfulfilledDayNormReport.count 0\n"));
+        assertTrue(text, text.contains("getPeriodReport.count 1\n"));
+        assertTrue(text, text.contains("days 1\n"));
+        assertTrue(text, text.contains("records 4\n"));
+        assertTrue(text, text.contains("maxRecordsPerDay 4\n"));
+    }
+
+    @Test
+    public void exposesValuesThroughJmx() throws Exception {
+        // arrange
+        HealthService service = new HealthService(setup(true));
+        service.drink("water", "glass", 1, LocalDateTime.of(currentDate, LocalTime.of(8, 0)));
+        // act
+        DynamicMBean bean = service.getInstrumentation().asMBean();
+        // assert
+        assertEquals(1L, bean.getAttribute("drink.count"));
+        assertEquals(1L, bean.getAttribute("records"));
+        assertTrue((Long) bean.getAttribute("drink.max") > 0);
+        assertTrue(bean.getMBeanInfo().getAttributes().length > 0);
+    }
+
+    @Test
+    public void recordsNothingWhenDisabled() throws Exception {
+        // arrange
+        HealthService service = new HealthService(setup(false));
+        // act
+        service.drink("water", "glass", 1, currentDate.atTime(8, 0));
+        service.getDayReport(currentDate);
+        // assert
+        assertFalse(service.getInstrumentation().isEnabled());
+        assertEquals("", service.getInstrumentation().toText());
+    }
+}
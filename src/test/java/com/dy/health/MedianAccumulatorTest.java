@@ -0,0 +1,187 @@
+package com.dy.health;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MedianAccumulatorTest {
+
+    private double precision = 0.00001;
+
+    @Test
+    public void exactMedianMatchesSortedMedian() throws Exception {
+        Random random = new Random(42);
+        for (int size = 1; size < 200; size++) {
+            double[] values = new double[size];
+            ExactMedian median = new ExactMedian(1);
+            for (int i = 0; i < size; i++) {
+                values[i] = random.nextInt(10) == 0 ? 0 : random.nextInt(50);
+                median.add(values[i]);
+            }
+            assertEquals(sortedMedian(values), median.median(), precision);
+        }
+    }
+
+    @Test
+    public void exactMedianOfNothingIsZero() throws Exception {
+        assertEquals(0, new ExactMedian(0).median(), precision);
+    }
+
+    @Test
+    public void approximateMedianStaysWithinRelativeError() throws Exception {
+        Random random = new Random(7);
+        double relativeError = 0.01;
+        for (int size = 1; size < 2000; size += 37) {
+            double[] values = new double[size];
+            QuantileSketch sketch = new QuantileSketch(relativeError);
+            for (int i = 0; i < size; i++) {
+                values[i] = random.nextDouble() * 20000;
+                sketch.add(values[i]);
+            }
+            double expected = sortedMedian(values);
+            assertEquals(expected, sketch.median(), expected * relativeError);
+        }
+    }
+
+    @Test
+    public void approximateMedianKeepsZeroes() throws Exception {
+        QuantileSketch sketch = new QuantileSketch(0.01);
+        for (double value : new double[]{0, 0, 0, 1200, 1500}) {
+            sketch.add(value);
+        }
+        assertEquals(0, sketch.median(), precision);
+    }
+
+    @Test
+    public void mergedSketchesEstimateTheUnion() throws Exception {
+        QuantileSketch left = new QuantileSketch(0.01);
+        QuantileSketch right = new QuantileSketch(0.01);
+        for (int i = 1; i <= 100; i++) {
+            (i % 2 == 0 ? left : right).add(i);
+        }
+        left.merge(right);
+        assertEquals(100, left.count());
+        assertEquals(50.5, left.median(), 50.5 * 0.01);
+    }
+
+    @Test
+    public void mergedExactMediansKeepEveryValue() throws Exception {
+        MedianAccumulator left = MedianMode.exact().newAccumulator(1);
+        MedianAccumulator right = MedianMode.exact().newAccumulator(1);
+        for (int i = 1; i <= 101; i++) {
+            (i <= 90 ? left : right).add(i);
+        }
+        left.merge(right);
+        assertEquals(51, left.median(), precision);
+    }
+
+    @Test
+    public void slidingMedianMatchesExactMedianOfItsWindow() throws Exception {
+        Random random = new Random(11);
+        double[] window = new double[30];
+        SlidingMedian median = new SlidingMedian();
+        for (double value : window) {
+            median.add(value);
+        }
+        for (int step = 0; step < 2000; step++) {
+            int slot = step % window.length;
+            median.remove(window[slot]);
+            window[slot] = random.nextInt(20); // plenty of duplicates
+            median.add(window[slot]);
+            assertEquals(sortedMedian(window), median.median(), precision);
+        }
+        assertEquals(window.length, median.size());
+    }
+
+    @Test
+    public void quantilesInterpolateBetweenNearestValues() throws Exception {
+        Random random = new Random(23);
+        for (int size = 1; size < 200; size++) {
+            double[] values = new double[size];
+            ExactMedian exact = new ExactMedian(1);
+            QuantileSketch sketch = new QuantileSketch(0.01);
+            for (int i = 0; i < size; i++) {
+                values[i] = 1 + random.nextInt(5000);
+                exact.add(values[i]);
+                sketch.add(values[i]);
+            }
+            for (double quantile : new double[]{0.1, 0.5, 0.9, 0, 1}) {
+                double expected = sortedQuantile(values, quantile);
+                assertEquals(expected, exact.quantile(quantile), precision);
+                assertEquals(expected, sketch.quantile(quantile), expected * 0.01);
+            }
+        }
+    }
+
+    @Test
+    public void exactQuantilesStayRightAfterTheMedian() throws Exception {
+        Random random = new Random(29);
+        for (int size = 1; size < 200; size++) {
+            double[] values = new double[size];
+            ExactMedian exact = new ExactMedian(1);
+            for (int i = 0; i < size; i++) {
+                values[i] = random.nextInt(5000);
+                exact.add(values[i]);
+            }
+            assertEquals(sortedQuantile(values, 0.75), exact.quantile(0.75), precision);
+            assertEquals(sortedMedian(values), exact.median(), precision);
+            assertEquals(sortedQuantile(values, 0.9), exact.quantile(0.9), precision);
+        }
+    }
+
+    @Test
+    public void mergedMetricAccumulatorsMatchOnePass() throws Exception {
+        // arrange
+        Random random = new Random(3);
+        MetricAccumulator whole = new MetricAccumulator(MedianMode.exact(), 1, 2000);
+        MetricAccumulator left = new MetricAccumulator(MedianMode.exact(), 1, 2000);
+        MetricAccumulator right = new MetricAccumulator(MedianMode.exact(), 1, 2000);
+        double[] values = new double[365];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(4000) + 1e6; // a large offset defeats naive sums of squares
+            whole.add(values[i]);
+            (i < 100 ? left : right).add(values[i]);
+        }
+        // act
+        left.merge(right);
+        left.merge(new MetricAccumulator(MedianMode.exact(), 1, 2000));
+        MetricStatistics merged = left.statistics();
+        MetricStatistics onePass = whole.statistics();
+        // assert
+        double mean = Arrays.stream(values).average().getAsDouble();
+        double variance = Arrays.stream(values).map(value -> (value - mean) * (value - mean)).sum() / values.length;
+        for (MetricStatistics statistics : new MetricStatistics[]{merged, onePass}) {
+            assertEquals(365, statistics.getDays());
+            assertEquals(mean, statistics.getMean(), precision);
+            assertEquals(Math.sqrt(variance), statistics.getStandardDeviation(), precision);
+            assertEquals(Arrays.stream(values).min().getAsDouble(), statistics.getMin(), 0);
+            assertEquals(Arrays.stream(values).max().getAsDouble(), statistics.getMax(), 0);
+            assertEquals(sortedQuantile(values, 0.9), statistics.getPercentile90(), precision);
+            assertEquals(365, statistics.getDaysMeetingNorm());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRelativeErrorOutsideOfUnitInterval() throws Exception {
+        MedianMode.approximate(1.5);
+    }
+
+    private double sortedQuantile(double[] values, double quantile) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        double position = quantile * (sorted.length - 1);
+        int lower = (int) Math.floor(position);
+        int upper = (int) Math.ceil(position);
+        return sorted[lower] + (position - lower) * (sorted[upper] - sorted[lower]);
+    }
+
+    private double sortedMedian(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int size = sorted.length;
+        return size % 2 == 1 ? sorted[size / 2] : (sorted[size / 2] + sorted[size / 2 - 1]) / 2.0;
+    }
+}
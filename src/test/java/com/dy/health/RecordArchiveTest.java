@@ -0,0 +1,159 @@
+package com.dy.health;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RecordArchiveTest {
+
+    private static final String ALL = "all";
+    private static final String LUNCH = "lunch";
+    private static HealthServiceSetup setup;
+    private final LocalDate currentDate = LocalDate.parse("2016-09-28");
+    private double precision = 0.00001;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void globalSetup() {
+        Map<String, TimeRange> namedTimeRanges = new HashMap<>();
+        namedTimeRanges.put(ALL, new TimeRange(LocalTime.of(0, 0), LocalTime.of(0, 0)));
+        namedTimeRanges.put(LUNCH, new TimeRange(LocalTime.of(12, 0), LocalTime.of(17, 0, 0, 500)));
+        setup = new HealthServiceSetup()
+                .setNamedTimeRanges(namedTimeRanges)
+                .setMinHoursOfMovementPerDay(2)
+                .setMinStepsPerDay(2000)
+                .setMinKilocalsPerDay(1300)
+                .setMinLitersPerDay(2);
+    }
+
+    @Test
+    public void importRestoresSetupAndEveryRecord() throws Exception {
+        // arrange
+        HealthService service = new HealthService(setup);
+        service.drink("water", "glass", 3, at("08:14"));
+        service.drink("juice", "ml", 333.3, at("09:00"));
+        service.eat("pizza", "kilocal", 504, at("14:30"));
+        service.eat("soup", "kilocal", 1.0 / 3, at("13:30").minusDays(400));
+        service.move("step", 1000, at("11:30"), at("12:00"));
+        service.move("step", 3000, at("23:00"), at("01:00").plusDays(1));
+        // act
+        byte[] archive = export(service);
+        HealthService imported = HealthService.importFrom(Channels.newChannel(new ByteArrayInputStream(archive)));
+        // assert
+        assertEquals(new HealthServiceSetup(setup), new HealthServiceSetup(imported.getSetup()));
+        assertEquals(service.drunk("liter", currentDate), imported.drunk("liter", currentDate), 0);
+        assertEquals(1.0 / 3, imported.eaten(ALL, "kilocal", currentDate.minusDays(400)), 0);
+        assertEquals(504, imported.eaten(LUNCH, "kilocal", currentDate), precision);
+        assertEquals(1500, imported.moved("step", currentDate.plusDays(1)), precision);
+        assertArrayEquals(archive, export(imported));
+    }
+
+    @Test
+    public void streamsLargeArchivesThroughFiles() throws Exception {
+        // arrange
+        HealthService service = new HealthService(setup);
+        RecordBatch batch = new RecordBatch();
+        char[] longName = new char[100_000];
+        Arrays.fill(longName, 'a');
+        batch.eat(new String(longName), "kilocal", 100, at("08:00")); // longer than a buffer
+        for (int i = 0; i < 200_000; i++) {
+            batch.drink(i % 2 == 0 ? "water" : "tea", "glass", i % 7, at("00:00").minusMinutes(i));
+        }
+        service.ingest(batch);
+        Path file = folder.newFile().toPath();
+        // act
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            service.exportTo(channel);
+        }
+        HealthService imported;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            imported = HealthService.importFrom(channel);
+            // assert
+            assertTrue(channel.size() < 200_000 * 5 + longName.length + 1_000); // 5 bytes a record
+        }
+        for (int day = 0; day < 140; day++) {
+            LocalDate date = currentDate.minusDays(day);
+            assertEquals(service.drunk("glass", date), imported.drunk("glass", date), 0);
+        }
+        assertEquals(100, imported.eaten(ALL, "kilocal", currentDate), 0);
+    }
+
+    @Test
+    public void importRestoresSummarizedDays() throws Exception {
+        // arrange
+        HealthService service = new HealthService(new HealthServiceSetup(setup).setRawRecordDays(1));
+        service.drink("water", "glass", 8, at("08:00").minusDays(5));
+        service.eat("pizza", "kilocal", 700, at("13:00").minusDays(5));
+        service.move("step", 1000, at("09:00").minusDays(5), at("09:30").minusDays(5));
+        service.move("km", 5, at("18:00").minusDays(5), at("19:00").minusDays(5));
+        service.drink("water", "bucket", 1, at("08:00").minusDays(4));
+        service.drink("water", "glass", 4, at("09:00").minusDays(4));
+        service.eat("soup", "kilocal", 300, at("13:00").minusDays(4));
+        service.drink("water", "glass", 2, at("08:00"));
+        service.eviction().join();
+        // act
+        byte[] archive = export(service);
+        HealthService imported = HealthService.importFrom(Channels.newChannel(new ByteArrayInputStream(archive)));
+        imported.eviction().join();
+        // assert
+        assertEquals(2, imported.drunk("liter", currentDate.minusDays(5)), precision);
+        assertEquals(700, imported.eaten(ALL, "kilocal", currentDate.minusDays(5)), precision);
+        assertEquals(1000, imported.moved("step", currentDate.minusDays(5)), precision);
+        assertEquals(1.5, imported.moved("hour", currentDate.minusDays(5)), precision);
+        assertEquals(300, imported.eaten(ALL, "kilocal", currentDate.minusDays(4)), precision);
+        try {
+            imported.drunk("liter", currentDate.minusDays(4));
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        PeriodReport report = imported.getPeriodReport(currentDate.minusDays(5), currentDate.minusDays(5));
+        assertEquals(1000, report.getStepsMedian(), precision);
+        assertEquals(2, report.getLiquidLitersMedian(), precision);
+        assertArrayEquals(archive, export(imported));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFormats() throws Exception {
+        HealthService.importFrom(Channels.newChannel(new ByteArrayInputStream(new byte[64])));
+    }
+
+    @Test(expected = EOFException.class)
+    public void rejectsTruncatedArchives() throws Exception {
+        // arrange
+        HealthService service = new HealthService(setup);
+        service.drink("water", "glass", 3, at("08:14"));
+        byte[] archive = export(service);
+        // act
+        HealthService.importFrom(Channels.newChannel(new ByteArrayInputStream(archive, 0, archive.length - 3)));
+    }
+
+    private static byte[] export(HealthService service) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.exportTo(Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    private LocalDateTime at(String time) {
+        return currentDate.atTime(LocalTime.parse(time));
+    }
+}
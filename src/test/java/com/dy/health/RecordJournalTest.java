@@ -0,0 +1,125 @@
+package com.dy.health;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RecordJournalTest {
+
+    private static final String ALL = "all";
+    private static final String LUNCH = "lunch";
+    private static HealthServiceSetup setup;
+    private final LocalDate currentDate = LocalDate.parse("2016-09-28");
+    private double precision = 0.00001;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void globalSetup() {
+        Map<String, TimeRange> namedTimeRanges = new HashMap<>();
+        namedTimeRanges.put(ALL, new TimeRange(LocalTime.of(0, 0), LocalTime.of(0, 0)));
+        namedTimeRanges.put(LUNCH, new TimeRange(LocalTime.of(12, 0), LocalTime.of(17, 0)));
+        setup = new HealthServiceSetup()
+                .setNamedTimeRanges(namedTimeRanges)
+                .setMinHoursOfMovementPerDay(2)
+                .setMinStepsPerDay(2000)
+                .setMinKilocalsPerDay(1300)
+                .setMinLitersPerDay(2);
+    }
+
+    @Test
+    public void restartRestoresEveryRecord() throws Exception {
+        // arrange
+        Path directory = folder.getRoot().toPath();
+        try (RecordJournal journal = RecordJournal.open(directory)) {
+            HealthService service = new HealthService(setup, journal);
+            service.drink("water", "glass", 3, at("08:14"));
+            service.eat("a pizza with an unreasonably long name", "kilocal", 504, at("14:30"));
+            service.move("step", 1000, at("11:30"), at("12:00"));
+            service.ingest(new RecordBatch().drink("juice", "liter", 0.5, at("10:00").minusDays(1)));
+        }
+        // act
+        try (RecordJournal journal = RecordJournal.open(directory)) {
+            HealthService restored = new HealthService(setup, journal);
+            // assert
+            assertEquals(0.75, restored.drunk("liter", currentDate), precision);
+            assertEquals(0.5, restored.drunk("liter", currentDate.minusDays(1)), precision);
+            assertEquals(504, restored.eaten(LUNCH, "kilocal", currentDate), precision);
+            assertEquals(1000, restored.moved("step", currentDate), precision);
+            assertEquals(0.5, restored.moved("hour", currentDate), precision);
+        }
+    }
+
+    @Test
+    public void recoversFromTornLastWrite() throws Exception {
+        // arrange
+        Path directory = folder.getRoot().toPath();
+        try (RecordJournal journal = RecordJournal.open(directory)) {
+            HealthService service = new HealthService(setup, journal);
+            service.drink("water", "glass", 1, at("08:00"));
+            service.drink("water", "glass", 2, at("10:00"));
+            service.drink("water", "glass", 4, at("13:00"));
+        }
+        // act
+        Path file = directory.resolve("journal-0.bin");
+        int length;
+        try (JournalFile journalFile = JournalFile.open(file, 0)) {
+            length = journalFile.length();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(length - JournalFile.ENTRY_SIZE / 2); // half of the last entry made it to disk
+        }
+        // assert
+        try (RecordJournal journal = RecordJournal.open(directory)) {
+            HealthService restored = new HealthService(setup, journal);
+            assertEquals(3, restored.drunk("glass", currentDate), precision);
+            restored.drink("water", "glass", 8, at("15:00"));
+        }
+        try (RecordJournal journal = RecordJournal.open(directory)) {
+            assertEquals(11, new HealthService(setup, journal).drunk("glass", currentDate), precision);
+        }
+    }
+
+    @Test
+    public void compactionFoldsOldDaysIntoSnapshot() throws Exception {
+        // arrange
+        Path directory = folder.getRoot().toPath();
+        try (RecordJournal journal = RecordJournal.open(directory)) {
+            HealthService service = new HealthService(setup, journal);
+            for (int day = 0; day < 10; day++) {
+                service.eat("porridge", "kilocal", 100 + day, at("08:30").minusDays(day));
+            }
+            // act
+            journal.compact(currentDate.minusDays(3));
+            service.eat("soup", "kilocal", 300, at("13:00"));
+        }
+        // assert
+        assertTrue(Files.exists(directory.resolve("snapshot-1.bin")));
+        assertFalse(Files.exists(directory.resolve("journal-0.bin")));
+        try (RecordJournal journal = RecordJournal.open(directory)) {
+            HealthService restored = new HealthService(setup, journal);
+            for (int day = 1; day < 10; day++) {
+                assertEquals(100 + day, restored.eaten(ALL, "kilocal", currentDate.minusDays(day)), precision);
+            }
+            assertEquals(400, restored.eaten(ALL, "kilocal", currentDate), precision);
+        }
+    }
+
+    private LocalDateTime at(String time) {
+        return currentDate.atTime(LocalTime.parse(time));
+    }
+}
@@ -0,0 +1,172 @@
+package com.dy.health;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ReminderSchedulerTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+    private final LocalDate currentDate = LocalDate.parse("2016-09-28");
+    private final List<String> reminded = new ArrayList<>();
+    private MutableClock clock;
+    private HealthService healthService;
+    private ReminderScheduler scheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        Map<String, TimeRange> namedTimeRanges = new HashMap<>();
+        namedTimeRanges.put("all", new TimeRange(LocalTime.of(0, 0), LocalTime.of(0, 0)));
+        namedTimeRanges.put("breakfast", new TimeRange(LocalTime.of(2, 0), LocalTime.of(11, 0)));
+        namedTimeRanges.put("lunch", new TimeRange(LocalTime.of(11, 0), LocalTime.of(17, 0)));
+        healthService = new HealthService(new HealthServiceSetup()
+                .setNamedTimeRanges(namedTimeRanges)
+                .setMinHoursOfMovementPerDay(2)
+                .setMinStepsPerDay(2000)
+                .setMinKilocalsPerDay(1300)
+                .setMinLitersPerDay(2));
+        clock = new MutableClock(currentDate.atTime(7, 0));
+        scheduler = new ReminderScheduler(clock, (reminder, left) ->
+                reminded.add(reminder.getUserId() + " " + reminder.getRule() + " " + reminder.getNext().toLocalDate()));
+    }
+
+    @Test
+    public void remindsOnTheReadmeSchedule() throws Exception {
+        // arrange
+        scheduler.schedule("alice", healthService, ReminderRule.defaultSchedule());
+        // act
+        clock.set(currentDate.atTime(7, 59, 59));
+        scheduler.runDue();
+        clock.set(currentDate.atTime(8, 0));
+        scheduler.runDue();
+        clock.set(currentDate.atTime(12, 0));
+        scheduler.runDue();
+        // assert
+        assertEquals(Arrays.asList(
+                "alice DRINK at 08:00 2016-09-28",
+                "alice DRINK at 10:00 2016-09-28",
+                "alice EAT breakfast at 08:30 2016-09-28",
+                "alice EAT lunch at 11:30 2016-09-28"), sorted(reminded));
+        assertEquals(4, scheduler.pendingCount());
+    }
+
+    @Test
+    public void skipsRemindersWhoseNormIsMet() throws Exception {
+        // arrange
+        scheduler.schedule("alice", healthService, ReminderRule.defaultSchedule());
+        healthService.drink("water", "liter", 2, currentDate.atTime(7, 30));
+        healthService.eat("porridge", "kilocal", 400, currentDate.atTime(7, 45));
+        // act
+        clock.set(currentDate.atTime(12, 0));
+        int fired = scheduler.runDue();
+        // assert
+        assertEquals(1, fired);
+        assertEquals(Collections.singletonList("alice EAT lunch at 11:30 2016-09-28"), reminded);
+    }
+
+    @Test
+    public void repeatsDailyAndStopsWhenCancelled() throws Exception {
+        // arrange
+        Reminder walk = scheduler.schedule("bob", healthService, ReminderRule.move(LocalTime.of(18, 0)));
+        // act
+        clock.set(currentDate.atTime(18, 0));
+        scheduler.runDue();
+        clock.set(currentDate.plusDays(1).atTime(18, 0));
+        scheduler.runDue();
+        walk.cancel();
+        clock.set(currentDate.plusDays(2).atTime(18, 0));
+        scheduler.runDue();
+        // assert
+        assertEquals(Arrays.asList("bob MOVE at 18:00 2016-09-28", "bob MOVE at 18:00 2016-09-29"), reminded);
+        assertEquals(0, scheduler.pendingCount());
+    }
+
+    @Test
+    public void firesAtWallClockTimeAcrossClockChange() throws Exception {
+        // arrange
+        clock.set(LocalDateTime.parse("2016-03-26T12:00:00"));
+        scheduler = new ReminderScheduler(clock, (reminder, left) ->
+                reminded.add(reminder.getUserId() + " " + reminder.getRule() + " " + reminder.getNext().toLocalDate()));
+        scheduler.schedule("alice", healthService, ReminderRule.drink(LocalTime.of(8, 0)));
+        // act
+        clock.set(LocalDateTime.parse("2016-03-27T07:59:59")); // 23 hours later as clocks went forward
+        scheduler.runDue();
+        clock.set(LocalDateTime.parse("2016-03-27T08:00:00"));
+        scheduler.runDue();
+        // assert
+        assertEquals(Collections.singletonList("alice DRINK at 08:00 2016-03-27"), reminded);
+    }
+
+    @Test
+    public void wheelFiresEveryTimeoutAtItsTickAndNoneCancelled() throws Exception {
+        // arrange
+        Random random = new Random(7);
+        TimingWheel<TimingWheel.Timeout> wheel = new TimingWheel<>(1_000);
+        Map<TimingWheel.Timeout, Long> deadlines = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            TimingWheel.Timeout timeout = new TimingWheel.Timeout();
+            long deadline = 1_001 + (random.nextBoolean() ? random.nextInt(5_000) : random.nextInt(40_000_000));
+            wheel.add(timeout, deadline);
+            deadlines.put(timeout, deadline);
+        }
+        Iterator<TimingWheel.Timeout> cancelled = deadlines.keySet().iterator();
+        for (int i = 0; i < 5_000; i++) {
+            wheel.cancel(cancelled.next());
+            cancelled.remove();
+        }
+        // act
+        List<TimingWheel.Timeout> due = new ArrayList<>();
+        long tick = 1_000;
+        while (!deadlines.isEmpty()) {
+            long previousTick = tick;
+            tick += 1 + random.nextInt(3_000);
+            due.clear();
+            wheel.advance(tick, due);
+            // assert
+            for (TimingWheel.Timeout timeout : due) {
+                Long deadline = deadlines.remove(timeout);
+                assertNotNull(deadline); // never a cancelled one
+                assertTrue(deadline <= tick);
+                assertTrue(deadline > previousTick); // not late either
+            }
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    private static List<String> sorted(List<String> values) {
+        List<String> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant;
+
+        MutableClock(LocalDateTime dateTime) {
+            set(dateTime);
+        }
+
+        void set(LocalDateTime dateTime) {
+            instant = dateTime.atZone(ZONE).toInstant();
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZONE;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}